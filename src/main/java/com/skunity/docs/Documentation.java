@@ -6,31 +6,33 @@ import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.classes.Parser;
 import ch.njol.skript.classes.Serializer;
 import ch.njol.skript.lang.*;
-import ch.njol.skript.registrations.Classes;
-import com.google.common.collect.Lists;
-import com.google.gson.*;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.StringJoiner;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 /**
  * Automatically update new or edited local syntax in your addon to skUnity Docs.
  * <br>
  * This API should be run once you want to upload new or edited syntaxes, so to prevent it be triggered in every server
  * that the addon is in, the API only works with a private key, which you can get it from skUnity docs page, and put the
- * key in a file called <code>plugins/&lt;Addon folder&gt;/addon.key</code> (you need to create yourself). Now every time this object is created, it will
- * check skUnity for your addon's syntaxes and compare them if there is something new or edited locally, and them it sends
- * directly to skUnity. More info about this API in <a href="https://github.com/Tuke-Nuke/skUnityAPI/wiki">Github</a>.
+ * key in a file called <code>plugins/&lt;Addon folder&gt;/addon.key</code> (you need to create yourself). Now every time
+ * {@link #start()} is called, it will check skUnity for your addon's syntaxes and compare them if there is something new
+ * or edited locally, and them it sends directly to skUnity. The sync runs in its own thread and it is cancelled when
+ * your addon is disabled, so it never blocks a reload or shutdown.
+ * <pre><code>
+ * new Documentation(this).start().thenAccept(result -&gt; getLogger().info("Docs synced: " + result));
+ * </code></pre>
+ * More info about this API in <a href="https://github.com/Tuke-Nuke/skUnityAPI/wiki">Github</a>.
  *
  */
 public class Documentation {
@@ -41,32 +43,78 @@ public class Documentation {
 	//The skUnity API Documentation key. The API will only work if the API is correct.
 	protected final String KEY;
 
-	//It is setted to true when the KEY is a correct key.
-	protected boolean isKeyValid = false;
+	//It is setted to true when the KEY is a correct key. Written by the sync thread and read by any other.
+	protected volatile boolean isKeyValid = false;
 
-	//A list of all of loaded syntax of your addon. Before updating, it will filter all syntax that are already in docs
-	//and didn't had any change on it (description, patterns...).
-	protected List<Syntax> syntaxes = new ArrayList<>();
+	//When the KEY was accepted before, so it doesn't need to be checked again until the TTL (in milliseconds) expires.
+	private final KeyCache keyCache;
+	protected volatile long keyCacheTtl = TimeUnit.DAYS.toMillis(1);
 
-	//Your current addon syntaxes from the documentation. It will be used to check if something was changed or added.
-	protected final List<Syntax> downloadedSyntax = new ArrayList<>();
+	//It is setted to true when skUnity checked the KEY in this server, instead of trusting the cache.
+	private volatile boolean keyChecked = false;
 
-		//Some options, see its method below to see what they do.
-	protected boolean friendlySyntax = true;
+	//The syntaxes added with addSyntax(Syntax). It can be called from any thread at any time, even while syncing.
+	protected final Queue<Syntax> addedSyntaxes = new ConcurrentLinkedQueue<>();
+
+	//A snapshot of the syntaxes that will be sent to skUnity: all loaded and added syntaxes of your addon, without the
+	//ones that are already in docs and didn't had any change on it (description, patterns...). It is never modified,
+	//only replaced by a new snapshot.
+	protected volatile List<Syntax> syntaxes = Collections.emptyList();
+
+	//A snapshot of your current addon syntaxes from the documentation. It will be used to check if something was
+	//changed or added. Like above, it is only replaced once the download is complete.
+	protected volatile List<Syntax> downloadedSyntax = Collections.emptyList();
+
+	//All loaded, added and downloaded syntaxes, so they can be searched.
+	protected final SyntaxIndex index = new SyntaxIndex();
+
+	//Some options, see its method below to see what they do.
+	protected volatile boolean friendlySyntax = false;
+	protected volatile boolean lazySyntax = true;
+	protected volatile boolean deltaUploads = false;
+	protected volatile long tickBudget = 0;
+
+	//The directory shared by servers that sync together and for how long a lease lasts, see syncLease(File, long).
+	protected volatile File leaseDirectory;
+	protected volatile long leaseTtl;
 
 	//The types that will be loaded automatically. By default of them are.
-	protected Syntax.Type[] automaticallyLoad = Syntax.Type.values();
+	protected volatile Syntax.Type[] automaticallyLoad = Syntax.Type.values();
 
 	//The class that will get every info from a syntax.
-	private SyntaxGetter getter;
+	private volatile SyntaxGetter getter;
 
 	//The converter JsonObject <-> Syntax
-	private JsonSyntaxConverter converter;
-	// Static values
-	private static final String API_BASE_URL = "https://docs.skunity.com/api/?key=%s";
-	private static final String API_FUNCTION_CHECK_KEY= "&function=checkKey";
-	private static final String API_FUNCTION_GET_ADDON_SYNTAX = "&function=getAddonSyntax&addon=%s";
-	private static final String API_FUNCTION_POST_ADDON_SYNTAX = "&function=massCreate&arrayReturn=true";
+	private volatile JsonSyntaxConverter converter;
+
+	//The current sync, null until start() is called.
+	private CompletableFuture<SyncResult> sync;
+
+	//The task that is running now: a sync, a plan or an apply. Only one can run at a time.
+	private CompletableFuture<?> task;
+
+	//The thread that runs the sync. It is shut down once the sync is done or cancelled.
+	private ExecutorService executor;
+
+	//The task that waits for Skript to finish its registrations.
+	private BukkitTask waitTask;
+
+	//Listen to the addon being disabled, to cancel the sync.
+	private Listener disableListener;
+
+	//The requests of the current task, its connections are closed right away when the sync is cancelled.
+	private volatile SkUnityClient client;
+
+	//Slows the sync thread down to the tick budget, only while a task is running and the budget is set.
+	private volatile TickThrottle throttle;
+
+	//The lease of the current sync, when the servers sync together.
+	private SyncLease lease;
+
+	//The base URL of skUnity API.
+	protected volatile String apiUrl = SkUnityClient.DEFAULT_API_URL;
+
+	private volatile boolean cancelled = false;
 	/**
 	 * The API version.
 	 */
@@ -92,10 +140,168 @@ public class Documentation {
 
 			}
 			KEY = line;
-			if (KEY != null)
-				validateKey();
 		} else
 			KEY = null;
+		keyCache = new KeyCache(new File(instance.getDataFolder(), "addon.key.cache"));
+	}
+
+	/**
+	 * Start the sync: validate the key, download your addon's syntaxes from skUnity, wait for Skript to finish its
+	 * registrations and then upload the new or edited syntaxes. Everything runs outside of the main thread. It should
+	 * be called in your {@link JavaPlugin#onEnable()}, after registering your addon.<br>
+	 * Calling it again returns the same future.
+	 * @return A future that completes with the {@link SyncResult}, or is cancelled if {@link #cancel()} is called or
+	 * your addon is disabled before the sync finishes.
+	 * @throws IllegalStateException if a {@link #plan()} or an {@link #apply(File)} is still running.
+	 */
+	public synchronized CompletableFuture<SyncResult> start() {
+		if (sync != null)
+			return sync;
+		if (KEY == null) {
+			sync = CompletableFuture.completedFuture(SyncResult.of(SyncResult.Status.NO_KEY));
+			return sync;
+		}
+		sync = submit(executor -> {
+			if (!acquireLease())
+				return CompletableFuture.completedFuture(readPublished());
+			if (!validateKey())
+				return CompletableFuture.completedFuture(SyncResult.of(SyncResult.Status.INVALID_KEY));
+			return CompletableFuture.runAsync(this::download, executor)
+					.thenCompose(v -> waitForSkript())
+					.thenApplyAsync(v -> upload(), executor);
+		}, SyncResult::failed);
+		return sync;
+	}
+
+	/**
+	 * Create a {@link SyncPlan} without sending anything to skUnity: it downloads your addon's syntaxes (only if there
+	 * is a key), waits for Skript to finish its registrations, compares them with the local syntaxes and saves the
+	 * plan in <code>plugins/&lt;Addon folder&gt;/sync-plan.json</code>. The plan can be sent later, even from another
+	 * server, with {@link #apply(File)}. If skUnity can't be reached to check the key, every local syntax is planned
+	 * as new.
+	 * @return A future that completes with the plan, or completes exceptionally if it couldn't be created or saved.
+	 * @throws IllegalStateException if there is a sync running.
+	 */
+	public synchronized CompletableFuture<SyncPlan> plan() {
+		return submit(executor -> {
+			boolean download;
+			try {
+				download = KEY != null && isKeyAccepted();
+			} catch (IOException e) {
+				checkCancelled();
+				log(Level.WARNING, "Couldn't check the key with skUnity (" + e + "), the plan is created as if your "
+						+ "addon had no syntaxes there.");
+				download = false;
+			}
+			CompletableFuture<Void> downloaded = download ?
+					CompletableFuture.runAsync(this::download, executor) : CompletableFuture.completedFuture(null);
+			return downloaded.thenCompose(v -> waitForSkript()).thenApplyAsync(v -> {
+				if (Skript.isAcceptRegistrations())
+					throw new IllegalStateException("The plan can't be created while Skript is accepting registration.");
+				SyncPlan plan = reconcile();
+				File file = getPlanFile();
+				try {
+					plan.write(file, getConverter());
+				} catch (IOException e) {
+					throw failure("A error occurred while saving the plan.", e);
+				}
+				log(Level.INFO, "A plan with " + plan.getAdds().size() + " new, " + plan.getEdits().size() + " edited and "
+						+ plan.getOrphans().size() + " orphan syntax(es) was saved at " + file.getPath());
+				return plan;
+			}, executor);
+		}, null);
+	}
+
+	/**
+	 * Send a plan created by {@link #plan()} to skUnity, without loading or downloading any syntax. It still needs
+	 * a valid key. The plan must be for this addon.
+	 * @param planFile The plan file. If null, it uses <code>plugins/&lt;Addon folder&gt;/sync-plan.json</code>.
+	 * @return A future that completes with the {@link SyncResult}.
+	 * @throws IllegalStateException if there is a sync running.
+	 */
+	public synchronized CompletableFuture<SyncResult> apply(File planFile) {
+		if (KEY == null)
+			return CompletableFuture.completedFuture(SyncResult.of(SyncResult.Status.NO_KEY));
+		File file = planFile != null ? planFile : getPlanFile();
+		return submit(executor -> {
+			if (!validateKey())
+				return CompletableFuture.completedFuture(SyncResult.of(SyncResult.Status.INVALID_KEY));
+			SyncPlan plan;
+			try {
+				plan = SyncPlan.read(file, getConverter());
+			} catch (IOException e) {
+				throw failure("A error occurred while reading the plan " + file.getPath(), e);
+			}
+			if (!ADDON.getName().equals(plan.getAddon()))
+				throw failure("A error occurred while reading the plan " + file.getPath(),
+						new IOException("The plan is for the addon " + plan.getAddon() + ", not " + ADDON.getName()));
+			return CompletableFuture.completedFuture(send(plan));
+		}, SyncResult::failed);
+	}
+
+	/**
+	 * Compare the local syntaxes with your addon's syntaxes in skUnity (only if there is a key) without sending
+	 * anything, like {@link #plan()}, but with an {@link ExternalDiff}: the download is streamed to temporary files
+	 * instead of being kept in memory, and the result is given to the handler instead of being saved. It is meant for
+	 * catalogues too big for the heap.
+	 * @param directory Where the temporary files are created, they are deleted once it completes.
+	 * @param memory About how many bytes of syntaxes can be kept in memory.
+	 * @param handler Receives the adds, edits and orphans, in the sync thread.
+	 * @return A future that completes once the handler received everything, or completes exceptionally if the
+	 * syntaxes couldn't be compared.
+	 * @throws IllegalStateException if there is a sync running.
+	 */
+	public synchronized CompletableFuture<Void> diff(File directory, long memory, ExternalDiff.Handler handler) {
+		if (memory <= 0)
+			throw new IllegalArgumentException("The memory budget must be positive.");
+		return submit(executor -> {
+			boolean download = KEY != null && validateKey();
+			return waitForSkript().thenRunAsync(() -> {
+				if (Skript.isAcceptRegistrations())
+					throw new IllegalStateException("The syntaxes can't be compared while Skript is accepting registration.");
+				try (ExternalDiff diff = new ExternalDiff(directory, memory)) {
+					if (download)
+						getClient().getAddonSyntax(ADDON.getName(), diff::addRemote);
+					for (Syntax syntax : loadSyntaxes()) {
+						checkpoint();
+						diff.addLocal(syntax);
+					}
+					diff.finish(handler);
+				} catch (IOException e) {
+					throw failure("A error occurred while comparing the syntaxes.", e);
+				}
+			}, executor);
+		}, null);
+	}
+
+	/**
+	 * Cancel the sync, closing any connection to skUnity that is still open. It is called automatically when your
+	 * addon is disabled.
+	 * @return true if a running sync was cancelled.
+	 */
+	public boolean cancel() {
+		CompletableFuture<?> current;
+		synchronized (this) {
+			current = task;
+			if (current == null || current.isDone())
+				return false;
+			cancelled = true;
+		}
+		SkUnityClient requests = client;
+		if (requests != null)
+			requests.cancel();
+		boolean result = current.cancel(false);
+		finish();
+		log(Level.INFO, "The sync with skUnity was cancelled.");
+		return result;
+	}
+
+	/**
+	 * Get the current sync.
+	 * @return The future returned by {@link #start()}, or null if it wasn't started yet.
+	 */
+	public synchronized CompletableFuture<SyncResult> getSync() {
+		return sync;
 	}
 
 
@@ -119,24 +325,32 @@ public class Documentation {
 	 * @return The SyntaxGetter.
 	 */
 	public SyntaxGetter getGetter() {
-		if (getter == null)
-			getter = new SyntaxGetter(ADDON);
-		return getter;
+		SyntaxGetter current = getter;
+		if (current == null)
+			synchronized (this) {
+				if (getter == null)
+					getter = new SyntaxGetter(ADDON);
+				current = getter;
+			}
+		return current;
 	}
 
 	/**
 	 * Convert some syntaxes to user friendly to see.
 	 * Some group indexes (<code>1¦|2¦</code>...) and escaped values
-	 * (removes all <code>\\</code> that is used to escape the next char).<br>
+	 * (removes the <code>\\</code> that aren't needed to escape the next char).<br>
 	 * Examples:
 	 * <pre><code>
-	 *     (1¦one|2¦two) of %player% -&gt; (one|two) of player
+	 *     (1¦one|2¦two) of %player% -&gt; (one|two) of %player%
 	 *
-	 *     do \\function\(%objects%\) -&gt; do \function(%objects%)
+	 *     \give %itemtypes% \[to %player%\] -&gt; give %itemtypes% \[to %player%\]
 	 *
 	 *     //For Types only, it converts from java regex to Skript regex
 	 *     some ?example(s)? -&gt; some[ ]example[s]
 	 * </code></pre>
+	 * The friendly pattern has the same structure of the original one (see {@link SkriptPattern#toFriendlyString()}),
+	 * so it is compared the same way. It only changes the loaded syntaxes, not the ones added with
+	 * {@link #addSyntax(Syntax)}. Disabled by default, enabling it edits the patterns that are already in skUnity.
 	 *
 	 * @param value True to make a friendly syntax.
 	 * @return Its own instance
@@ -146,6 +360,102 @@ public class Documentation {
 		return this;
 	}
 
+	/**
+	 * Only get each information of the syntaxes (description, examples, changers...) when it is needed. Syntaxes that
+	 * are already in skUnity are compared by their name and patterns first, the rest is only loaded if they are the
+	 * same or if they will be uploaded. Enabled by default.
+	 *
+	 * @param value False to load all information of all syntaxes before comparing them.
+	 * @return Its own instance
+	 */
+	public Documentation lazySyntax(boolean value) {
+		lazySyntax = value;
+		return this;
+	}
+
+	/**
+	 * Send only the changed fields of edited syntaxes (plus its id and type), instead of the whole syntax. If skUnity
+	 * doesn't accept it, the full edited syntaxes are sent right after. The new syntaxes are sent in their own
+	 * request before them. Disabled by default.
+	 *
+	 * @param value True to send only the changed fields.
+	 * @return Its own instance
+	 */
+	public Documentation deltaUploads(boolean value) {
+		deltaUploads = value;
+		return this;
+	}
+
+	/**
+	 * Trust a key that skUnity accepted before for some time, instead of checking it in every start. Only a hash of
+	 * the key and when it was accepted are saved, in <code>plugins/&lt;Addon folder&gt;/addon.key.cache</code>. Once
+	 * half of the time passed, the key is checked again in background, and it is also checked right away if skUnity
+	 * rejects the syntaxes. One day by default.
+	 *
+	 * @param ttl For how long, in milliseconds, or 0 to check the key in every start.
+	 * @return Its own instance
+	 */
+	public Documentation keyCache(long ttl) {
+		if (ttl < 0)
+			throw new IllegalArgumentException("The key cache TTL can not be negative.");
+		keyCacheTtl = ttl;
+		return this;
+	}
+
+	/**
+	 * Sync together with other servers that have the same addon and share a directory. Only one of them, the one that
+	 * holds a lease file in the directory, downloads, compares and uploads the syntaxes, and then publishes them in a
+	 * {@link SyntaxSnapshot}. The others finish with {@link SyncResult.Status#DELEGATED} and read that snapshot instead,
+	 * so they can still be searched in {@link #getIndex()}.<br>
+	 * The holder renews the lease while it is syncing. If it stops or crashes, the lease expires after the TTL and the
+	 * next server to start takes it. After a successful sync it is kept until it expires, so servers that start a bit
+	 * later don't sync again. It only applies to {@link #start()}. Disabled by default.
+	 *
+	 * @param directory The shared directory, or null to always sync.
+	 * @param ttl For how long a lease lasts without being renewed, in milliseconds.
+	 * @return Its own instance
+	 */
+	public Documentation syncLease(File directory, long ttl) {
+		if (directory != null && ttl <= 0)
+			throw new IllegalArgumentException("The lease TTL must be positive.");
+		leaseDirectory = directory;
+		leaseTtl = ttl;
+		return this;
+	}
+
+	/**
+	 * Limit how much CPU time the sync thread uses in each server tick. Once the budget of a tick is used, the thread
+	 * waits for the next tick, and it doesn't work at all while the server is lagging, only resuming once the ticks
+	 * are back to normal. It makes the sync slower, but it won't compete with the server in small machines.
+	 * While it is set, the sync runs in a platform thread even in Java 21, since the CPU time of a virtual thread can't
+	 * be measured. Only the work between requests counts, since a thread waiting for a response doesn't use CPU time.
+	 * Disabled by default.
+	 *
+	 * @param millisPerTick The CPU time per tick, in milliseconds, or 0 to not limit it.
+	 * @return Its own instance
+	 */
+	public Documentation throttle(long millisPerTick) {
+		if (millisPerTick < 0)
+			throw new IllegalArgumentException("The tick budget can not be negative.");
+		tickBudget = millisPerTick;
+		return this;
+	}
+
+	/**
+	 * Change the base URL of skUnity API, for testing against a local server.
+	 * By default, it is <code>https://docs.skunity.com/api/</code>, or the system property
+	 * <code>skunity.api.url</code> if it is set.
+	 *
+	 * @param url The base URL, the parameters (<code>?key=...</code>) are added to it.
+	 * @return Its own instance
+	 */
+	public Documentation apiUrl(String url) {
+		if (url == null)
+			throw new NullPointerException("The API URL can not be null.");
+		apiUrl = url;
+		return this;
+	}
+
 	/**
 	 * Set which types of syntaxes should be automatically loaded.<br>
 	 * Since Skript doesn't track the addon owner of a given element, it will find the addon by checking its package names. <br>
@@ -172,211 +482,509 @@ public class Documentation {
 	 *     <li>The {@link ClassInfo} itself.</li>
 	 * </ul>
 	 * For the last option, you will need to create your class that extends {@link ClassInfo}, so this way the object will have your addon's package.
+	 * If your syntaxes are in other packages, register them with {@link #addPackages(String...)}.
 	 * @param types An array of {@link com.skunity.docs.Syntax.Type} that should be loaded automatically. By default, is setted to all {@link Syntax.Type Syntax.Types}
 	 * @return Its own instance
 	 */
 	public Documentation loadAutomatically(Syntax.Type... types) {
-		//automaticallyLoad = types;
+		automaticallyLoad = types != null ? types.clone() : null;
+		return this;
+	}
+	/**
+	 * Add base packages of your syntaxes, in case they aren't at the same package level of your main class.
+	 * @see OwnershipClassifier#registerPackages(JavaPlugin, String...)
+	 * @param packages The base packages, such as <code>com.example.elements</code>.
+	 * @return Its own instance
+	 */
+	public Documentation addPackages(String... packages) {
+		OwnershipClassifier.registerPackages(ADDON, packages);
 		return this;
 	}
+
 	/**
 	 * Manually add the syntax of your addon. It is only required in case it can't find your addon syntaxes,
 	 * {@link #loadAutomatically(Syntax.Type...)} is setted to null or you want to manually add something.
 	 * <br>
+	 * It is safe to call it from any thread, syntaxes added while a sync is running are sent in the next one.
 	 * @see Syntax
 	 * @param syntax The Syntax object.
 	 * @return true if it has the minimum requirements: The API Key setted, the syntax's name and patterns not null
 	 */
 	public boolean addSyntax(Syntax syntax) {
-		//It won't add any syntax if the key is not present or the syntax doesn't have a name and pattern
-		if (KEY == null || syntax == null || !syntax.isValid())
+		if (!prepare(syntax))
 			return false;
-		if (syntax.get(Syntax.Field.ADDON) == null)
-			syntax.set(Syntax.Field.ADDON, ADDON.getName());
-		syntaxes.add(syntax);
+		addedSyntaxes.add(syntax);
+		index.add(syntax);
 		return true;
 	}
 
+	/**
+	 * Get the index of the syntaxes of your addon, which can be used to search them (in a help command, for example).
+	 * It is filled with the syntaxes added with {@link #addSyntax(Syntax)}, the ones downloaded from skUnity and the
+	 * ones loaded automatically, as soon as they are available.
+	 * @return The syntax index.
+	 */
+	public SyntaxIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return The file where {@link #plan()} saves the plan.
+	 */
+	public File getPlanFile() {
+		return new File(ADDON.getDataFolder(), "sync-plan.json");
+	}
+
+	/**
+	 * Check all patterns registered in Skript for patterns of your addon that overlap with patterns of other addons,
+	 * logging each one found. It doesn't need the key and it can take a while with many addons, so it should be called
+	 * asynchronously, after Skript stopped accepting registrations.
+	 * @see PatternOverlapDetector
+	 * @return The conflicts that involves your addon.
+	 * @throws IllegalStateException if Skript is still accepting registrations.
+	 */
+	public List<PatternOverlapDetector.Overlap> analyzePatterns() {
+		if (Skript.isAcceptRegistrations())
+			throw new IllegalStateException("The patterns can't be analyzed while Skript is accepting registration.");
+		List<PatternOverlapDetector.Overlap> result = new ArrayList<>();
+		for (PatternOverlapDetector.Overlap overlap : PatternOverlapDetector.fromSkript().detect())
+			if (ADDON.getName().equals(overlap.getFirstAddon()) || ADDON.getName().equals(overlap.getSecondAddon())) {
+				result.add(overlap);
+				log(Level.WARNING, overlap.toString());
+			}
+		log(Level.INFO, "A total of " + result.size() + " pattern conflict(s) was(were) found.");
+		return result;
+	}
+
 	/*
 	  --------------------- INTERNAL CODE ---------------------
 	  No methods below should be used (since it's internal usage only)
 	  ---------------------------------------------------------
 	 */
 	private JsonSyntaxConverter getConverter() {
-		if (converter == null)
-			converter = new JsonSyntaxConverter(getGetter());
-		return converter;
+		JsonSyntaxConverter current = converter;
+		if (current == null)
+			synchronized (this) {
+				if (converter == null)
+					converter = new JsonSyntaxConverter(getGetter());
+				current = converter;
+			}
+		return current;
 	}
 
-	protected void validateKey() {
-		if (KEY != null && !isKeyValid) {
-			log(Level.INFO, "A key was found, validating the key: " + KEY);
-			Thread check = new Thread(() -> {
-				HttpURLConnection skunity = null;
-				try {
-					skunity = (HttpURLConnection) new URL(method(API_FUNCTION_CHECK_KEY)).openConnection();
-					skunity.addRequestProperty("Connection", "close");
-					skunity.setRequestProperty("Content-Type", "application/json");
-					skunity.setRequestProperty("User-Agent", "skUnity API Documentation/" + VERSION);
-					skunity.setRequestMethod("GET");
-					skunity.setUseCaches(false);
-					JsonObject result = (JsonObject) new JsonParser().parse(new InputStreamReader(skunity.getInputStream()));
-					JsonElement response = result.get("response");
-					isKeyValid = skunity.getResponseCode() == 200 || response.isJsonPrimitive()
-							&& response.getAsString().equals("success");
-					if (isKeyValid) {
-						log(Level.INFO, "The key is correct. Waiting for Skript finishes registration and loading to continue.");
-						download();
-					} else {
-						log(Level.WARNING, "The key is incorrect. Go to your skUnity addon page and check for your API key.");
-					}
-				} catch (UnknownHostException e){
-					log(Level.WARNING, "Couldn't upload the syntaxes due to connection issue. Check your connection status.");
-				} catch (Exception e) {
-					log(Level.SEVERE, "A error occurred while checking the key to SkUnity:");
-					e.printStackTrace();
-				} finally {
-					if (skunity != null)
-						skunity.disconnect();
-				}
-			},"Checking skUnity API key of  " + ADDON.getName());
-			check.setDaemon(true);
-			check.start();
+	//It won't add any syntax if the key is not present or the syntax doesn't have a name and pattern
+	private boolean prepare(Syntax syntax) {
+		if (KEY == null || syntax == null || !syntax.isValid())
+			return false;
+		if (syntax.get(Syntax.Field.ADDON) == null)
+			syntax.set(Syntax.Field.ADDON, ADDON.getName());
+		return true;
+	}
+
+	protected boolean validateKey() {
+		try {
+			return isKeyAccepted();
+		} catch (IOException e) {
+			throw failure("A error occurred while checking the key to SkUnity:", e);
+		}
+	}
+
+	// Validates the key with the cache or with skUnity. It throws if skUnity couldn't be reached.
+	private boolean isKeyAccepted() throws IOException {
+		if (KEY == null)
+			return false;
+		if (isKeyValid)
+			return true;
+		long ttl = keyCacheTtl;
+		long age = ttl > 0 ? System.currentTimeMillis() - keyCache.getValidated(KEY) : -1;
+		if (age >= 0 && age < ttl) {
+			log(Level.INFO, "The key was already validated. Waiting for Skript finishes registration and loading to continue.");
+			isKeyValid = true;
+			if (age > ttl / 2)
+				revalidateKey();
+			return true;
+		}
+		log(Level.INFO, "A key was found, validating the key: " + KEY);
+		isKeyValid = checkKey(getClient());
+		if (isKeyValid)
+			log(Level.INFO, "The key is correct. Waiting for Skript finishes registration and loading to continue.");
+		else
+			log(Level.WARNING, "The key is incorrect. Go to your skUnity addon page and check for your API key.");
+		return isKeyValid;
+	}
+
+	// Checks the key with skUnity and updates the cache.
+	private boolean checkKey(SkUnityClient requests) throws IOException {
+		boolean valid = requests.checkKey();
+		keyChecked = true;
+		if (!valid) {
+			keyCache.clear();
+		} else if (keyCacheTtl > 0) {
+			try {
+				keyCache.save(KEY, System.currentTimeMillis());
+			} catch (IOException e) {
+				log(Level.WARNING, "Couldn't save the key validation, it will be checked again in the next start.");
+			}
 		}
+		return valid;
+	}
+
+	// Renews the cache without holding the sync. It has its own client, so cancelling the sync doesn't stop it.
+	private void revalidateKey() {
+		SkUnityClient requests = new SkUnityClient(apiUrl, KEY, getConverter());
+		CompletableFuture.runAsync(() -> {
+			try {
+				if (!checkKey(requests))
+					log(Level.WARNING, "The key is not accepted by skUnity anymore. Go to your skUnity addon page and check for your API key.");
+			} catch (IOException e) {
+				// The cache is still valid, it will be tried again in the next start
+			}
+		}, SyncThreads.background());
 	}
+
 	protected void download() {
 		if (KEY != null && isKeyValid) {
-			//No new thread needed here, it should run at first one
-			HttpURLConnection skunity;
 			try {
-				skunity = (HttpURLConnection) new URL(method(API_FUNCTION_GET_ADDON_SYNTAX, ADDON.getName())).openConnection();
-				skunity.addRequestProperty("Connection", "close");
-				skunity.setRequestProperty("Content-Type", "application/json");
-				skunity.setRequestProperty("User-Agent", "skUnity API Documentation/" + VERSION);
-				skunity.setRequestMethod("GET");
-				JsonObject result = (JsonObject) new JsonParser().parse(new InputStreamReader(skunity.getInputStream()));
-				for (JsonElement json : (JsonArray)result.get("result")) {
-					downloadedSyntax.add(getConverter().fromJson((JsonObject) json));
-				}
-				log(Level.INFO, "A total of " + downloadedSyntax.size() + " syntaxes was found in skUnity.");
-				ADDON.getServer().getScheduler().runTaskLaterAsynchronously(ADDON, this::upload, 5L);
-			} catch (UnknownHostException e){
-				log(Level.WARNING, "Couldn't upload the syntaxes due to connection issue. Check your connection status.");
+				List<Syntax> downloaded = getClient().getAddonSyntax(ADDON.getName());
+				downloadedSyntax = Collections.unmodifiableList(downloaded);
+				index.addAll(downloaded);
+				log(Level.INFO, "A total of " + downloaded.size() + " syntaxes was found in skUnity.");
 			} catch (IOException e) {
-				log(Level.SEVERE, "A error occurred while downloading the documentation.");
-				e.printStackTrace();
+				throw failure("A error occurred while downloading the documentation.", e);
 			}
 		}
 	}
 
-	protected void upload() {
+	// Runs the steps in a new sync thread, that is shut down once they are done or cancelled. If onError is null, the
+	// returned future completes exceptionally when they fail.
+	private synchronized <T> CompletableFuture<T> submit(Function<Executor, CompletableFuture<T>> steps,
+														Function<Throwable, T> onError) {
+		if (task != null && !task.isDone())
+			throw new IllegalStateException("There is already a sync running.");
+		cancelled = false;
+		client = new SkUnityClient(apiUrl, KEY, getConverter());
+		// The throttle measures the CPU time of the sync thread, which only a platform thread has
+		String name = "skUnity API sync of " + ADDON.getName();
+		ExecutorService executor = tickBudget > 0 ? SyncThreads.newPlatformThread(name)
+				: SyncThreads.newSingleThread(name);
+		this.executor = executor;
+		if (tickBudget > 0) {
+			throttle = new TickThrottle(tickBudget);
+			throttle.start(ADDON);
+		}
+		disableListener = new Listener() {
+			@EventHandler
+			public void onDisable(PluginDisableEvent e) {
+				if (e.getPlugin() == ADDON)
+					cancel();
+			}
+		};
+		ADDON.getServer().getPluginManager().registerEvents(disableListener, ADDON);
+		CompletableFuture<T> result = new CompletableFuture<>();
+		CompletableFuture.supplyAsync(() -> steps.apply(executor), executor).thenCompose(f -> f).whenComplete((r, error) -> {
+			if (error instanceof CompletionException && error.getCause() != null)
+				error = error.getCause();
+			if (cancelled || error instanceof CancellationException)
+				result.cancel(false);
+			else if (error != null && onError != null)
+				result.complete(onError.apply(error));
+			else if (error != null)
+				result.completeExceptionally(error);
+			else
+				result.complete(r);
+			finish();
+		});
+		task = result;
+		return result;
+	}
+
+	// Bukkit only starts ticking its scheduler once the server finished loading, so Skript won't be accepting
+	// registrations anymore when it runs.
+	private CompletableFuture<Void> waitForSkript() {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		checkCancelled();
+		waitTask = ADDON.getServer().getScheduler().runTaskLater(ADDON, () -> future.complete(null), 5L);
+		return future;
+	}
+
+	protected SyncResult upload() {
 		// Just some safe check.
 		if (KEY == null)
 			throw new IllegalStateException("The KEY can't not be null");
 		if (!isKeyValid)
 			// It never happen unless someone tries to manually call it
 			throw new IllegalStateException("You need to input a valid key to upload it.");
+		checkSkript();
+		// Filter the downloaded syntaxes which is the same as local syntaxes (same name, pattern, description...)
+		SyncPlan plan = reconcile();
+		syntaxes = plan.getSyntaxes();
+		SyncLease current = lease;
+		if (current != null && !current.isHeld()) {
+			log(Level.WARNING, "The sync lease expired and was taken by another server, so it won't upload the syntaxes.");
+			return readPublished();
+		}
+		SyncResult result = send(plan);
+		if (current != null && result.getStatus() != SyncResult.Status.INVALID_KEY)
+			publish(current, plan);
+		return result;
+	}
+
+	/**
+	 * Check that Skript is done with the registrations and that the addon is registered, before the syntaxes are
+	 * compared and uploaded.
+	 * @throws IllegalStateException if it isn't.
+	 */
+	protected void checkSkript() {
 		if (Skript.isAcceptRegistrations())
-			// Same as above
+			// Same as the key check, it never happen unless someone tries to manually call upload()
 			throw new IllegalStateException("The documentation can't be uploaded while Skript is accepting registration.");
 		if (Skript.getAddon(ADDON) == null)
 			// It doesn't change nothing in the API, but just a check in case someone makes that mistake
 			throw new IllegalStateException("You must register your plugin as addon using Skript.registerAddon(JavaPlugin)");
-		// As said above, it will ran at same thread.
-		HttpURLConnection skunity = null;
+	}
+
+	// Takes the lease if the servers sync together. If the directory can't be used, it syncs alone.
+	private boolean acquireLease() {
+		File directory = leaseDirectory;
+		if (directory == null)
+			return true;
+		SyncLease current = new SyncLease(directory, ADDON.getName(), leaseTtl);
+		boolean acquired;
 		try {
-			// Filter the downloaded syntaxes which is the same as local syntaxes (same name, pattern, description...)
-			filterSyntaxes();
-			if (syntaxes.size() == 0) {//Nothing to add
-				return;
+			acquired = current.acquire();
+		} catch (IOException e) {
+			log(Level.WARNING, "Couldn't use the sync lease in " + directory.getPath() + ", syncing without it.", e);
+			return true;
+		}
+		// Only a lease that was acquired or is held by another server is kept, and it is released by finish()
+		synchronized (this) {
+			if (cancelled) {
+				current.release();
+				throw new CancellationException();
 			}
-			// Add all syntaxes to a json array
-			JsonArray array = new JsonArray();
-			int added = 0, edited = 0;
-			for (Syntax syntax : syntaxes) {
-				array.add(getConverter().fromSyntax(syntax));
-				if (syntax.get(Syntax.Field.ID) == null)
-					added++;
-				else
-					edited++;
+			lease = current;
+		}
+		return acquired;
+	}
+
+	// Reads the syntaxes published by the server that holds the lease. A snapshot of an older lease is ignored, since
+	// the holder may be changing them right now.
+	protected SyncResult readPublished() {
+		File file = lease.getSnapshotFile();
+		long since = lease.getHolderSince();
+		if (!file.exists() || since < 0 || file.lastModified() < since) {
+			log(Level.INFO, "Another server is syncing the syntaxes, none were published yet.");
+			return SyncResult.of(SyncResult.Status.DELEGATED);
+		}
+		try {
+			SyntaxSnapshot snapshot = SyntaxSnapshot.open(file);
+			List<Syntax> published = new ArrayList<>(snapshot.size());
+			for (int i = 0; i < snapshot.size(); i++)
+				published.add(snapshot.getSyntax(i));
+			downloadedSyntax = Collections.unmodifiableList(published);
+			index.addAll(published);
+			log(Level.INFO, "Another server is syncing the syntaxes, a total of " + published.size() + " syntaxes was read from it.");
+		} catch (IOException e) {
+			log(Level.WARNING, "Couldn't read the syntaxes published in " + file.getPath(), e);
+		}
+		return SyncResult.of(SyncResult.Status.DELEGATED);
+	}
+
+	// Publishes what is in skUnity now: the downloaded syntaxes with the edits and adds of the plan.
+	private void publish(SyncLease current, SyncPlan plan) {
+		Set<Syntax> edited = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<Syntax> published = new ArrayList<>(downloadedSyntax.size() + plan.getAdds().size());
+		for (SyncPlan.Edit edit : plan.getEdits()) {
+			edited.add(edit.getPrevious());
+			published.add(edit.getSyntax());
+		}
+		for (Syntax syntax : downloadedSyntax)
+			if (!edited.contains(syntax))
+				published.add(syntax);
+		published.addAll(plan.getAdds());
+		try {
+			SyntaxSnapshot.write(current.getSnapshotFile(), published);
+			current.complete();
+		} catch (IOException e) {
+			log(Level.WARNING, "Couldn't publish the syntaxes in " + current.getSnapshotFile().getPath(), e);
+		}
+	}
+
+	// Send the plan to skUnity, it will ran at same thread.
+	private SyncResult send(SyncPlan plan) {
+		if (plan.isEmpty()) //Nothing to add
+			return SyncResult.success(0, 0);
+		int added = plan.getAdds().size(), edited = plan.getEdits().size();
+		try {
+			Collection<Syntax> full = plan.getSyntaxes();
+			if (deltaUploads && edited > 0) {
+				// The adds go on their own, so only the edits are sent again if skUnity rejects the changed fields
+				if (added > 0 && !getClient().massCreate(plan.getAdds(), Collections.<SyncPlan.Edit>emptyList()))
+					return rejected();
+				if (getClient().massCreate(Collections.<Syntax>emptyList(), plan.getEdits())) {
+					log(Level.INFO, "A total of " + added + " syntax(es) was(were) added and "  + edited + " edited." );
+					return SyncResult.success(added, edited);
+				}
+				log(Level.INFO, "skUnity didn't accept only the changed fields, sending the full syntaxes.");
+				full = new ArrayList<>(edited);
+				for (SyncPlan.Edit edit : plan.getEdits())
+					full.add(edit.getSyntax());
 			}
-			// Encode the syntaxes as an array data
-			String data = "data=" + URLEncoder.encode(array.toString(), "UTF-8");
-			skunity = (HttpURLConnection) new URL(method(API_FUNCTION_POST_ADDON_SYNTAX)).openConnection();
-			skunity.addRequestProperty("Connection", "close");
-			skunity.addRequestProperty("Content-Length", data.length() + "");
-			skunity.setRequestProperty("Content-Type", "application/json");
-			skunity.setRequestProperty("User-Agent", "skUnity API Documentation/" + VERSION);
-			skunity.setRequestMethod("POST");
-			skunity.setDoOutput(true);
-			DataOutputStream output = new DataOutputStream(skunity.getOutputStream());
-			output.write(data.getBytes("UTF-8"));
-			output.flush();
-			output.close();
+			if (!getClient().massCreate(full, Collections.<SyncPlan.Edit>emptyList()))
+				return rejected();
 			log(Level.INFO, "A total of " + added + " syntax(es) was(were) added and "  + edited + " edited." );
-		} catch (UnknownHostException e){
-			log(Level.WARNING, "Couldn't upload the syntaxes due to connection issue. Check your connection status.");
+			return SyncResult.success(added, edited);
 		} catch (IOException e) {
-			log(Level.SEVERE, "A error occurred while sending documentation to skUnity");
-			e.printStackTrace();
-		} finally {
-			if (skunity != null)
-				skunity.disconnect();
+			throw failure("A error occurred while sending documentation to skUnity", e);
+		}
+	}
+
+	// skUnity rejected full syntaxes. The key was trusted from the cache, so it may have been changed since then.
+	private SyncResult rejected() throws IOException {
+		if (!keyChecked && !checkKey(getClient())) {
+			isKeyValid = false;
+			log(Level.WARNING, "The key is incorrect. Go to your skUnity addon page and check for your API key.");
+			return SyncResult.of(SyncResult.Status.INVALID_KEY);
 		}
+		throw new IOException("skUnity didn't accept the syntaxes.");
 	}
 
 	/**
-	 * Load syntaxes from Skript.
+	 * Load syntaxes from Skript, plus the ones added with {@link #addSyntax(Syntax)}.
+	 * @return A new list of all local syntaxes, it isn't shared with anything else.
 	 */
-	protected void loadSyntaxes() {
-		if (automaticallyLoad != null)
-			for (Syntax.Type type : automaticallyLoad) {
-				Collection list = null;
-				switch (type) {
-					case EVENT: list = Skript.getEvents(); break;
-					case CONDITION: list = Skript.getConditions(); break;
-					case EFFECT: list = Skript.getEffects(); break;
-					case EXPRESSION: list = Lists.newArrayList(Skript.getExpressions()); break;
-					case TYPE: list = Classes.getClassInfos(); break;
+	protected List<Syntax> loadSyntaxes() {
+		List<Syntax> loaded = new ArrayList<>();
+		// Every sync resolves the fields again
+		getGetter().clearCache();
+		boolean friendly = friendlySyntax;
+		Syntax.Type[] types = automaticallyLoad;
+		if (types != null)
+			for (Syntax.Type type : types) {
+				for (Object info : getElements(type)) {
+					checkpoint();
+					Syntax syntax = lazySyntax ? getGetter().getLazySyntax(info) : getGetter().getSyntax(info);
+					if (prepare(syntax)) {
+						if (friendly)
+							toFriendly(syntax);
+						loaded.add(syntax);
+					}
 				}
-				// A kind of impossible.
-				if (list == null)
-					continue;
-				for (Object info : list)
-					addSyntax(getGetter().getSyntax(info));
 			}
+		// A lazy syntax is indexed by its cheap fields, its description is only added once it is searched
+		index.addAll(loaded);
+		loaded.addAll(addedSyntaxes);
+		return loaded;
+	}
+
+	/**
+	 * Get the Skript elements of the addon of a type, which are loaded by {@link #loadSyntaxes()}.
+	 * @return The elements, such as {@link SyntaxElementInfo} objects.
+	 */
+	protected List<Object> getElements(Syntax.Type type) {
+		// Only the elements that belongs to this addon, the registries are walked once for all addons.
+		return OwnershipClassifier.get().getElements(ADDON, type);
+	}
+
+	// Types have Java regexes as patterns, anything else has Skript patterns. See #friendlySyntax(boolean)
+	private static void toFriendly(Syntax syntax) {
+		String patterns = syntax.get(Syntax.Field.PATTERN);
+		boolean type = syntax.get(Syntax.Field.TYPE) == Syntax.Type.TYPE;
+		StringBuilder result = new StringBuilder(patterns.length());
+		for (String pattern : patterns.split("\n")) {
+			if (result.length() > 0)
+				result.append('\n');
+			result.append((type ? SkriptPattern.fromRegex(pattern) : SkriptPattern.parse(pattern)).toFriendlyString());
+		}
+		syntax.set(Syntax.Field.PATTERN, result.toString());
 	}
 
-	protected void filterSyntaxes() {
+	/**
+	 * Load the local syntaxes and remove the ones that are already in skUnity. The result is also published in
+	 * {@link #syntaxes}.
+	 * @return An unmodifiable list of the syntaxes that needs to be added or edited.
+	 */
+	protected List<Syntax> filterSyntaxes() {
+		return syntaxes = reconcile().getSyntaxes();
+	}
+
+	/**
+	 * Load the local syntaxes and compare them with the downloaded ones.
+	 * @return The plan of what needs to be added or edited.
+	 */
+	protected SyncPlan reconcile() {
 		// Load syntaxes from Skript
-		loadSyntaxes();
-		// Nothing in skUnity, so send it all as new.
-		if (downloadedSyntax.size() == 0)
-			return;
-		syntaxes = syntaxes.stream().filter(syntax1 -> {
-			for (Syntax syntax2 : downloadedSyntax) {
-				if (!syntax1.get(Syntax.Field.TYPE).equals(syntax2.get(Syntax.Field.TYPE)))
-					continue;
-				if (StringUtils.equals(syntax1.get(Syntax.Field.NAME), syntax2.get(Syntax.Field.NAME))
-						|| StringUtils.equalsPatterns(syntax1.get(Syntax.Field.PATTERN), syntax2.get(Syntax.Field.PATTERN))) {
-					if (syntax1.equals(syntax2)) // It means that if they are the same, they don't need to be added/edited.
-						return false;
-					// It will copy the id of the downloaded syntax, to the new one.
-					// So it will be edited instead of added.
-					syntax1.set(Syntax.Field.ID, syntax2.get(Syntax.Field.ID));
-					return true;
-				}
+		List<Syntax> local = loadSyntaxes();
+		// Only read the snapshot once, so it is the same in the whole comparison
+		return SyncPlan.create(ADDON.getName(), local, downloadedSyntax, this::checkpoint);
+	}
+
+	// The client of the current task. If there is none, it is only used outside of a sync.
+	private SkUnityClient getClient() {
+		SkUnityClient current = client;
+		if (current == null)
+			synchronized (this) {
+				if (client == null)
+					client = new SkUnityClient(apiUrl, KEY, getConverter());
+				current = client;
 			}
-			// If it reaches here, it means it couldn't find one, so it will be added instead.
-			return true;
-		}).collect(Collectors.toList());
+		return current;
+	}
+
+	// Waits here if the sync thread used its tick budget, see #throttle(long). It must not be called while holding a
+	// lock that the main thread may need, such as the one of a LazySyntax, or the server would stop ticking.
+	protected void checkpoint() {
+		TickThrottle current = throttle;
+		if (current != null)
+			current.checkpoint();
+	}
+
+	protected void checkCancelled() {
+		if (cancelled || Thread.currentThread().isInterrupted())
+			throw new CancellationException();
+	}
+
+	// Logs the error and wraps it, so the sync completes as failed. Errors caused by a cancellation aren't logged.
+	private RuntimeException failure(String msg, IOException e) {
+		if (cancelled)
+			return new CancellationException();
+		if (e instanceof UnknownHostException)
+			log(Level.WARNING, "Couldn't upload the syntaxes due to connection issue. Check your connection status.");
+		else
+			log(Level.SEVERE, msg, e);
+		return new CompletionException(e);
+	}
+
+	// Release everything that the sync was holding.
+	private synchronized void finish() {
+		if (waitTask != null) {
+			waitTask.cancel();
+			waitTask = null;
+		}
+		if (disableListener != null) {
+			HandlerList.unregisterAll(disableListener);
+			disableListener = null;
+		}
+		if (lease != null) {
+			lease.release();
+			lease = null;
+		}
+		if (throttle != null) {
+			throttle.stop();
+			throttle = null;
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	protected void log(Level lvl, String msg, Throwable error) {
+		ADDON.getLogger().log(lvl,"[skUnity API] " + msg, error);
 	}
 
 	protected void log(Level lvl, String msg) {
 		ADDON.getLogger().log(lvl,"[skUnity API] " + msg);
 	}
 
-	private String method(String method, String... args) {
-		return String.format(API_BASE_URL, KEY) + String.format(method, args) ;
-	}
 }
@@ -0,0 +1,120 @@
+package com.skunity.docs;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptAddon;
+import com.google.gson.stream.JsonWriter;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+/**
+ * Export the syntaxes of every Skript addon in the server (Skript included) to JSON files, one per addon, in the same
+ * format used by skUnity. Skript registries are walked only once for all addons (see {@link OwnershipClassifier}) and
+ * each addon is written in parallel.
+ * <pre><code>
+ * new DocumentationExporter(this).export(new File(getDataFolder(), "export"))
+ *         .thenAccept(result -&gt; getLogger().info("Exported " + result.size() + " addons"));
+ * </code></pre>
+ * It doesn't need a key, since nothing is sent to skUnity.
+ */
+public class DocumentationExporter {
+
+	private final JavaPlugin plugin;
+	private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+	/**
+	 * @param plugin The plugin that is exporting, used for logging.
+	 */
+	public DocumentationExporter(JavaPlugin plugin) {
+		if (plugin == null)
+			throw new NullPointerException("The instance of your plugin can not be null.");
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Set how many addons are exported at the same time.
+	 * @param threads The amount of threads. By default, it is the amount of processors minus one.
+	 * @return Its own instance
+	 */
+	public DocumentationExporter threads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("It needs at least one thread.");
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Export all addons to a folder, as <code>&lt;addon name&gt;.json</code>. It runs asynchronously.
+	 * @param folder The folder, it is created if it doesn't exist.
+	 * @return A future that completes with the amount of syntaxes exported by addon's name.
+	 * @throws IllegalStateException if Skript is still accepting registrations.
+	 */
+	public CompletableFuture<Map<String, Integer>> export(File folder) {
+		if (Skript.isAcceptRegistrations())
+			throw new IllegalStateException("The syntaxes can't be exported while Skript is accepting registration.");
+		if (!folder.exists() && !folder.mkdirs())
+			throw new IllegalArgumentException("Couldn't create the folder " + folder);
+		ExecutorService executor = SyncThreads.newPool(threads, "skUnity API export");
+		Map<String, Integer> result = new ConcurrentHashMap<>();
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		OwnershipClassifier classifier = OwnershipClassifier.get();
+		for (JavaPlugin addon : getAddons()) {
+			if (!classifier.getAddons().contains(addon.getName()))
+				continue;
+			futures.add(CompletableFuture.runAsync(() -> {
+				File file = new File(folder, addon.getName() + ".json");
+				try {
+					result.put(addon.getName(), export(classifier, addon, file));
+				} catch (IOException e) {
+					throw new CompletionException(e);
+				}
+			}, executor));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).handle((v, error) -> {
+			executor.shutdown();
+			if (error != null) {
+				plugin.getLogger().log(Level.SEVERE, "[skUnity API] A error occurred while exporting the syntaxes", error);
+				throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+			}
+			return Collections.unmodifiableMap(result);
+		});
+	}
+
+	// Write the syntaxes of an addon, one by one, straight to the file.
+	private int export(OwnershipClassifier classifier, JavaPlugin addon, File file) throws IOException {
+		SyntaxGetter getter = new SyntaxGetter(addon);
+		JsonSyntaxConverter converter = new JsonSyntaxConverter(getter);
+		int count = 0;
+		try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+			// Empty fields are left out, like the json of skUnity
+			writer.setSerializeNulls(false);
+			writer.beginArray();
+			for (Syntax.Type type : Syntax.Type.values())
+				for (Object info : classifier.getElements(addon.getName(), type)) {
+					Syntax syntax = getter.getSyntax(info);
+					if (syntax == null || !syntax.isValid())
+						continue;
+					if (syntax.get(Syntax.Field.ADDON) == null)
+						syntax.set(Syntax.Field.ADDON, addon.getName());
+					converter.write(writer, syntax);
+					count++;
+				}
+			writer.endArray();
+		}
+		return count;
+	}
+
+	private static Collection<JavaPlugin> getAddons() {
+		Map<String, JavaPlugin> result = new LinkedHashMap<>();
+		List<SkriptAddon> addons = new ArrayList<>(Skript.getAddons());
+		addons.add(Skript.getAddonInstance());
+		for (SkriptAddon addon : addons)
+			if (addon != null && addon.plugin != null)
+				result.putIfAbsent(addon.plugin.getName(), addon.plugin);
+		return result.values();
+	}
+}
@@ -0,0 +1,113 @@
+package com.skunity.docs;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.classes.ClassInfo;
+import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.registrations.EventValues;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of the event values registered in Skript ({@link EventValues}), by Bukkit event class. Skript doesn't
+ * expose them, so they are read once from its registrations and every event lookup after that is just a map access.
+ * <br>
+ * An event has the values registered for its own class and for any of its supertypes, the same way Skript finds them.
+ */
+class EventValueIndex {
+
+	// The index is only shared once Skript stopped accepting registrations, since more values could be registered.
+	private static volatile EventValueIndex instance;
+
+	// The list fields in EventValues and the prefix of their values in a script.
+	private static final String[][] TIMES = {
+			{"defaultEventValues", ""},
+			{"pastEventValues", "past "},
+			{"futureEventValues", "future "}};
+
+	//Values registered exactly for each event class
+	private final Map<Class<?>, Set<String>> registered = new HashMap<>();
+
+	//Values of each event class including its supertypes, filled on demand.
+	private final Map<Class<?>, String[]> resolved = new ConcurrentHashMap<>();
+
+	static EventValueIndex get() {
+		EventValueIndex index = instance;
+		if (index == null) {
+			index = new EventValueIndex();
+			if (!Skript.isAcceptRegistrations())
+				instance = index;
+		}
+		return index;
+	}
+
+	private EventValueIndex() {
+		for (String[] time : TIMES) {
+			try {
+				Field field = EventValues.class.getDeclaredField(time[0]);
+				field.setAccessible(true);
+				for (Object info : (List<?>) field.get(null)) {
+					Class<?> event = (Class<?>) getValue(info, "event");
+					Class<?> value = (Class<?>) getValue(info, "c");
+					if (event == null || value == null)
+						continue;
+					ClassInfo<?> classInfo = Classes.getSuperClassInfo(value);
+					if (classInfo != null)
+						registered.computeIfAbsent(event, k -> new LinkedHashSet<>())
+								.add(time[1] + "event-" + classInfo.getCodeName());
+				}
+			} catch (ReflectiveOperationException | RuntimeException ignored) {
+				// Different Skript version, there is nothing to do.
+			}
+		}
+	}
+
+	private static Object getValue(Object info, String name) throws ReflectiveOperationException {
+		Field field = info.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(info);
+	}
+
+	/**
+	 * Get the event values of some events.
+	 * @param events The Bukkit event classes.
+	 * @return The event values, such as <code>event-player</code>, or null if there is none.
+	 */
+	String[] getValues(Class<?>... events) {
+		if (events == null || events.length == 0)
+			return null;
+		if (events.length == 1)
+			return nullIfEmpty(resolve(events[0]));
+		Set<String> result = new LinkedHashSet<>();
+		for (Class<?> event : events)
+			if (event != null)
+				Collections.addAll(result, resolve(event));
+		return nullIfEmpty(result.toArray(new String[result.size()]));
+	}
+
+	private String[] resolve(Class<?> event) {
+		return resolved.computeIfAbsent(event, c -> {
+			Set<String> values = new LinkedHashSet<>();
+			Deque<Class<?>> types = new ArrayDeque<>();
+			Set<Class<?>> visited = new HashSet<>();
+			types.add(c);
+			while (!types.isEmpty()) {
+				Class<?> type = types.poll();
+				if (!visited.add(type))
+					continue;
+				Set<String> direct = registered.get(type);
+				if (direct != null)
+					values.addAll(direct);
+				if (type.getSuperclass() != null)
+					types.add(type.getSuperclass());
+				Collections.addAll(types, type.getInterfaces());
+			}
+			return values.toArray(new String[values.size()]);
+		});
+	}
+
+	private static String[] nullIfEmpty(String[] array) {
+		return array.length == 0 ? null : array;
+	}
+}
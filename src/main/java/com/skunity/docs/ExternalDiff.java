@@ -0,0 +1,501 @@
+package com.skunity.docs;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compares local syntaxes with the ones in skUnity like {@link SyncPlan}, but with a fixed amount of memory, for
+ * catalogues that don't fit in the heap, such as a dump of every addon in the network.
+ * <pre><code>
+ * try (ExternalDiff diff = new ExternalDiff(folder, 64 * 1024 * 1024)) {
+ *     for (Syntax syntax : local)
+ *         diff.addLocal(syntax);
+ *     for (Syntax syntax : remote)
+ *         diff.addRemote(syntax);
+ *     diff.finish(handler);
+ * }
+ * </code></pre>
+ * {@link Documentation#diff(File, long, Handler)} does it with the syntaxes of an addon, streaming the download.
+ * The syntaxes are kept in memory until they reach the memory budget, then they are sorted and written to a temporary
+ * file (a run). Once all syntaxes were added, the runs are merged and joined with the remote syntaxes, so only the
+ * current syntax of each run is in memory:
+ * <ol>
+ *     <li>By type and name, finding the first remote syntax with the same name of each local syntax.</li>
+ *     <li>By type and pattern structure (see {@link SkriptPattern#equals(Object)}), finding the first one with the
+ *     same patterns.</li>
+ *     <li>By the order of the remote syntaxes, comparing each local syntax with the first of both matches.</li>
+ * </ol>
+ * The result is the same of {@link SyncPlan}, but the adds, edits and orphans are given to the {@link Handler} as
+ * they are found, in the order of the remote syntaxes, instead of being kept in lists.
+ */
+public final class ExternalDiff implements Closeable {
+
+	/**
+	 * Receives the result of the comparison.
+	 */
+	public interface Handler {
+		/**
+		 * A local syntax that is not in skUnity.
+		 */
+		void add(Syntax syntax) throws IOException;
+
+		/**
+		 * A local syntax that is different in skUnity. The edit has a copy of it, with the id of the one in skUnity.
+		 */
+		void edit(SyncPlan.Edit edit) throws IOException;
+
+		/**
+		 * A syntax in skUnity that wasn't found locally.
+		 */
+		void orphan(Syntax syntax) throws IOException;
+	}
+
+	// How many runs are merged at the same time. More runs are merged in steps.
+	private static final int FAN_IN = 16;
+	private static final int BUFFER = 8192;
+	private static final Syntax.Field[] FIELDS = Syntax.Field.values();
+
+	// A syntax, or only where to find it, sorted by its key and then by its order
+	private static final class Entry {
+		private final String key;
+		private final long order;
+		private long match = -1;
+		private final Syntax syntax;
+
+		private Entry(String key, long order, Syntax syntax) {
+			this.key = key;
+			this.order = order;
+			this.syntax = syntax;
+		}
+
+		// The approximate size in the heap
+		private long size() {
+			long size = 64 + 2L * key.length();
+			if (syntax != null)
+				for (Syntax.Field field : FIELDS) {
+					Object value = syntax.get(field);
+					if (value instanceof String)
+						size += 48 + 2L * ((String) value).length();
+					else if (value instanceof String[])
+						for (String str : (String[]) value)
+							size += 48 + (str != null ? 2L * str.length() : 0);
+				}
+			return size;
+		}
+	}
+
+	private static final Comparator<Entry> ORDER = (e1, e2) -> {
+		int result = e1.key.compareTo(e2.key);
+		return result != 0 ? result : Long.compare(e1.order, e2.order);
+	};
+
+	private final File directory;
+	private final long runBudget;
+	private final List<File> files = new ArrayList<>();
+
+	private final Sorter localByName, remoteByName, remoteByPattern;
+	private final DataOutputStream remote;
+	private long localCount = 0, remoteCount = 0;
+	private boolean finished = false;
+
+	/**
+	 * @param directory Where the temporary files are created. They are deleted once it is closed.
+	 * @param memory About how many bytes of syntaxes can be kept in memory.
+	 * @throws IOException if the directory can't be used.
+	 */
+	public ExternalDiff(File directory, long memory) throws IOException {
+		if (memory <= 0)
+			throw new IllegalArgumentException("The memory budget must be positive.");
+		if (!directory.exists() && !directory.mkdirs())
+			throw new IOException("Couldn't create the folder " + directory);
+		this.directory = directory;
+		// Up to four sorters have entries in memory at the same time: the three below, and the local syntaxes by
+		// pattern while the ones by name are still being read
+		runBudget = Math.max(1, memory / 4);
+		localByName = new Sorter();
+		remoteByName = new Sorter();
+		remoteByPattern = new Sorter();
+		remote = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newFile()), BUFFER));
+	}
+
+	/**
+	 * Add a local syntax. It is compared in the same order that it was added.
+	 */
+	public void addLocal(Syntax syntax) throws IOException {
+		checkNotFinished();
+		localByName.add(new Entry(nameKey(syntax), localCount++, syntax));
+	}
+
+	/**
+	 * Add a syntax from skUnity. The first one to match a local syntax is used, like in {@link SyncPlan}.
+	 */
+	public void addRemote(Syntax syntax) throws IOException {
+		checkNotFinished();
+		long order = remoteCount++;
+		writeSyntax(remote, syntax);
+		// Only the keys are sorted, the syntax is read again in the last step
+		remoteByName.add(new Entry(nameKey(syntax), order, null));
+		remoteByPattern.add(new Entry(patternKey(syntax), order, null));
+	}
+
+	/**
+	 * Compare all added syntaxes. It can only be called once.
+	 * @param handler Receives the adds, edits and orphans.
+	 */
+	public void finish(Handler handler) throws IOException {
+		checkNotFinished();
+		finished = true;
+		remote.close();
+		File remoteFile = files.get(0);
+		// 1. The first remote syntax with the same name
+		Sorter localByPattern = new Sorter();
+		try (Source locals = localByName.sorted(); Source remotes = remoteByName.sorted()) {
+			for (Entry local; (local = locals.next()) != null; ) {
+				local.match = join(local, remotes);
+				Entry next = new Entry(patternKey(local.syntax), local.order, local.syntax);
+				next.match = local.match;
+				localByPattern.add(next);
+			}
+		}
+		// 2. Or the first one with the same patterns, if it comes before
+		Sorter localByMatch = new Sorter();
+		try (Source locals = localByPattern.sorted(); Source remotes = remoteByPattern.sorted()) {
+			for (Entry local; (local = locals.next()) != null; ) {
+				long match = join(local, remotes);
+				if (match >= 0 && (local.match < 0 || match < local.match))
+					local.match = match;
+				Entry next = new Entry("", local.match, local.syntax);
+				next.match = local.match;
+				localByMatch.add(next);
+			}
+		}
+		// 3. Compare with the matched syntax, the ones that weren't matched are orphans
+		try (Source locals = localByMatch.sorted();
+			 DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(remoteFile), BUFFER))) {
+			long read = 0;
+			Syntax current = null;
+			boolean matched = false;
+			for (Entry local; (local = locals.next()) != null; ) {
+				if (local.match < 0) {
+					handler.add(local.syntax);
+					continue;
+				}
+				while (read <= local.match) {
+					if (current != null && !matched)
+						handler.orphan(current);
+					current = readSyntax(input);
+					matched = false;
+					read++;
+				}
+				matched = true;
+				if (local.syntax.equals(current))
+					continue;
+				Syntax edited = local.syntax.copy().set(Syntax.Field.ID, current.get(Syntax.Field.ID));
+				handler.edit(new SyncPlan.Edit(edited, current, local.syntax.getChangedFields(current)));
+			}
+			if (current != null && !matched)
+				handler.orphan(current);
+			for (; read < remoteCount; read++)
+				handler.orphan(readSyntax(input));
+		}
+	}
+
+	/**
+	 * Compare two JSON files, each one an array of syntaxes in skUnity format, such as the ones written by
+	 * {@link DocumentationExporter}. They are read as a stream.
+	 * @param local The local syntaxes.
+	 * @param remote The syntaxes in skUnity.
+	 * @param handler Receives the adds, edits and orphans.
+	 */
+	public void diff(File local, File remote, Handler handler) throws IOException {
+		JsonSyntaxConverter converter = new JsonSyntaxConverter(null);
+		readJson(local, converter, true);
+		readJson(remote, converter, false);
+		finish(handler);
+	}
+
+	/**
+	 * Delete the temporary files.
+	 */
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		remote.close();
+		for (File file : files)
+			file.delete();
+		files.clear();
+	}
+
+	// The order of the first remote syntax with the same key, or -1. The remote source is sorted by the same key.
+	private static long join(Entry local, Source remotes) throws IOException {
+		Entry remote;
+		while ((remote = remotes.peek()) != null && remote.key.compareTo(local.key) < 0)
+			remotes.next();
+		// Equal keys are sorted by their order, so the first one is the first remote syntax
+		return remote != null && remote.key.equals(local.key) ? remote.order : -1;
+	}
+
+	private void readJson(File file, JsonSyntaxConverter converter, boolean local) throws IOException {
+		try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+					reader.skipValue();
+					continue;
+				}
+				Syntax syntax = converter.read(reader);
+				if (syntax == null)
+					continue;
+				if (local)
+					addLocal(syntax);
+				else
+					addRemote(syntax);
+			}
+			reader.endArray();
+		} catch (IllegalStateException e) { // Thrown by the reader when it isn't the expected json
+			throw new IOException("The file " + file + " is not an array of syntaxes", e);
+		}
+	}
+
+	// Same name, see SyncPlan#create. A null name is the same as an empty one.
+	private static String nameKey(Syntax syntax) {
+		String name = syntax.get(Syntax.Field.NAME);
+		return syntax.get(Syntax.Field.TYPE).toString() + '\u0000' + (name != null ? name : "");
+	}
+
+	// Same patterns, see StringUtils#equalsPatterns.
+	private static String patternKey(Syntax syntax) {
+		String patterns = StringUtils.normalizePattern(syntax.get(Syntax.Field.PATTERN));
+		StringBuilder sb = new StringBuilder(syntax.get(Syntax.Field.TYPE).toString()).append('\u0000');
+		for (SkriptPattern pattern : SkriptPattern.parseAll(patterns != null ? patterns : ""))
+			sb.append(pattern.toStructuralString()).append('\n');
+		return sb.toString();
+	}
+
+	private void checkNotFinished() {
+		if (finished)
+			throw new IllegalStateException("The syntaxes were already compared.");
+	}
+
+	private File newFile() throws IOException {
+		File file = File.createTempFile("skunity-diff", ".run", directory);
+		files.add(file);
+		return file;
+	}
+
+	private void delete(File file) {
+		file.delete();
+		files.remove(file);
+	}
+
+	// Keeps the entries in memory until the budget, then writes them sorted to a run.
+	private final class Sorter {
+		private List<Entry> buffer = new ArrayList<>();
+		private final List<File> runs = new ArrayList<>();
+		private long buffered = 0;
+
+		private void add(Entry entry) throws IOException {
+			buffer.add(entry);
+			buffered += entry.size();
+			if (buffered >= runBudget)
+				spill();
+		}
+
+		private void spill() throws IOException {
+			buffer.sort(ORDER);
+			File file = newFile();
+			try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER))) {
+				for (Entry entry : buffer)
+					writeEntry(output, entry);
+			}
+			runs.add(file);
+			buffer.clear();
+			buffered = 0;
+		}
+
+		// All entries, sorted. The sorter can't be used after it.
+		private Source sorted() throws IOException {
+			if (runs.isEmpty()) {
+				// The source takes the entries, so they are released once it is done
+				List<Entry> entries = buffer;
+				buffer = new ArrayList<>();
+				buffered = 0;
+				entries.sort(ORDER);
+				return new Source(entries.iterator());
+			}
+			if (!buffer.isEmpty())
+				spill();
+			// Too many runs are merged in steps, so only a few are open at a time
+			while (runs.size() > FAN_IN) {
+				List<File> group = new ArrayList<>(runs.subList(0, FAN_IN));
+				runs.subList(0, FAN_IN).clear();
+				File file = newFile();
+				try (Source source = new Source(group);
+					 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER))) {
+					for (Entry entry; (entry = source.next()) != null; )
+						writeEntry(output, entry);
+				}
+				runs.add(file);
+			}
+			return new Source(runs);
+		}
+	}
+
+	// The sorted entries of a sorter, one at a time.
+	private final class Source implements Closeable {
+		private final Iterator<Entry> memory;
+		private final List<File> runs;
+		private final List<DataInputStream> inputs = new ArrayList<>();
+		private final PriorityQueue<Head> heads = new PriorityQueue<>((h1, h2) -> ORDER.compare(h1.entry, h2.entry));
+		private Entry peeked;
+
+		private Source(Iterator<Entry> memory) {
+			this.memory = memory;
+			this.runs = Collections.emptyList();
+		}
+
+		private Source(List<File> runs) throws IOException {
+			this.memory = null;
+			this.runs = runs;
+			for (File run : runs) {
+				DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(run), BUFFER));
+				inputs.add(input);
+				Entry head = readEntry(input);
+				if (head != null)
+					heads.add(new Head(head, input));
+			}
+		}
+
+		private Entry peek() throws IOException {
+			if (peeked == null)
+				peeked = read();
+			return peeked;
+		}
+
+		private Entry next() throws IOException {
+			Entry result = peek();
+			peeked = null;
+			return result;
+		}
+
+		private Entry read() throws IOException {
+			if (memory != null)
+				return memory.hasNext() ? memory.next() : null;
+			Head head = heads.poll();
+			if (head == null)
+				return null;
+			Entry next = readEntry(head.input);
+			if (next != null)
+				heads.add(new Head(next, head.input));
+			return head.entry;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (DataInputStream input : inputs)
+				input.close();
+			for (File run : runs)
+				delete(run);
+		}
+	}
+
+	// The current entry of a run
+	private static final class Head {
+		private final Entry entry;
+		private final DataInputStream input;
+
+		private Head(Entry entry, DataInputStream input) {
+			this.entry = entry;
+			this.input = input;
+		}
+	}
+
+	private static void writeEntry(DataOutputStream output, Entry entry) throws IOException {
+		output.writeBoolean(true);
+		writeString(output, entry.key);
+		output.writeLong(entry.order);
+		output.writeLong(entry.match);
+		output.writeBoolean(entry.syntax != null);
+		if (entry.syntax != null)
+			writeSyntax(output, entry.syntax);
+	}
+
+	private static Entry readEntry(DataInputStream input) throws IOException {
+		if (!readMarker(input))
+			return null;
+		String key = readString(input);
+		long order = input.readLong();
+		long match = input.readLong();
+		Entry entry = new Entry(key, order, input.readBoolean() ? readSyntax(input) : null);
+		entry.match = match;
+		return entry;
+	}
+
+	// The end of a run is the end of the file
+	private static boolean readMarker(DataInputStream input) throws IOException {
+		int marker = input.read();
+		return marker > 0;
+	}
+
+	// Every field, as it is, so the comparison is the same of the original syntax
+	private static void writeSyntax(DataOutputStream output, Syntax syntax) throws IOException {
+		output.writeByte(syntax.<Syntax.Type>get(Syntax.Field.TYPE).ordinal());
+		for (Syntax.Field field : FIELDS) {
+			if (field == Syntax.Field.TYPE)
+				continue;
+			Object value = syntax.get(field);
+			if (value instanceof Integer) {
+				output.writeByte(1);
+				output.writeInt((Integer) value);
+			} else if (value instanceof String) {
+				output.writeByte(2);
+				writeString(output, (String) value);
+			} else if (value instanceof String[]) {
+				output.writeByte(3);
+				output.writeInt(((String[]) value).length);
+				for (String str : (String[]) value) {
+					output.writeBoolean(str != null);
+					if (str != null)
+						writeString(output, str);
+				}
+			} else {
+				output.writeByte(0);
+			}
+		}
+	}
+
+	private static Syntax readSyntax(DataInputStream input) throws IOException {
+		Syntax syntax = new Syntax(Syntax.Type.values()[input.readUnsignedByte()]);
+		for (Syntax.Field field : FIELDS) {
+			if (field == Syntax.Field.TYPE)
+				continue;
+			switch (input.readUnsignedByte()) {
+				case 1: syntax.set(field, input.readInt()); break;
+				case 2: syntax.set(field, readString(input)); break;
+				case 3:
+					String[] array = new String[input.readInt()];
+					for (int i = 0; i < array.length; i++)
+						array[i] = input.readBoolean() ? readString(input) : null;
+					syntax.set(field, array);
+			}
+		}
+		return syntax;
+	}
+
+	// DataOutputStream#writeUTF is limited to 64KB, long descriptions may not fit
+	private static void writeString(DataOutputStream output, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static String readString(DataInputStream input) throws IOException {
+		byte[] bytes = new byte[input.readInt()];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -4,113 +4,293 @@ import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.lang.SkriptEventInfo;
 import ch.njol.skript.lang.SyntaxElementInfo;
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
-import java.util.Iterator;
-import java.util.StringJoiner;
+import java.util.*;
 
 /**
- * A converter from Json to Syntax and vice versa, according to skUnity format
+ * A converter from Json to Syntax and vice versa, according to skUnity format.<br>
+ * The fields of each {@link Syntax.Type} and how each one is written are computed once, so converting a syntax only
+ * walks its table. {@link #write(JsonWriter, Syntax)} and {@link #read(JsonReader)} stream a syntax without creating
+ * any {@link JsonObject}.<br>
+ * A syntax created by {@link #fromJson(JsonObject)} keeps its object until one of its fields is changed, so it is
+ * written back as it was, with any field that this converter doesn't know. A syntax created by
+ * {@link #read(JsonReader)} is written from its fields.
  */
 class JsonSyntaxConverter {
 
+	// How the value of a field is written in json
+	private enum Kind {
+		STRING,
+		ARRAY, // Only changers and event values
+		ID,
+		TYPE
+	}
+
+	private static final class FieldCodec {
+		private final Syntax.Field field;
+		private final String name;
+		private final Kind kind;
+
+		private FieldCodec(Syntax.Field field) {
+			this.field = field;
+			name = field.toString();
+			switch (field) {
+				case CHANGERS:
+				case EVENT_VALUES: kind = Kind.ARRAY; break;
+				case ID: kind = Kind.ID; break;
+				case TYPE: kind = Kind.TYPE; break;
+				default: kind = Kind.STRING;
+			}
+		}
+	}
+
+	// The fields of each type, in the same order of Syntax.Type#getFields()
+	private static final Map<Syntax.Type, FieldCodec[]> FIELDS = new EnumMap<>(Syntax.Type.class);
+	// The fields by their json name
+	private static final Map<String, FieldCodec> BY_NAME = new HashMap<>();
+	// Writes a kept json object, following the null setting of the writer
+	private static final TypeAdapter<JsonElement> JSON_ELEMENT = new Gson().getAdapter(JsonElement.class);
+	static {
+		for (Syntax.Field field : Syntax.Field.values())
+			BY_NAME.put(field.toString(), new FieldCodec(field));
+		for (Syntax.Type type : Syntax.Type.values()) {
+			Syntax.Field[] fields = type.getFields();
+			FieldCodec[] table = new FieldCodec[fields.length];
+			for (int i = 0; i < fields.length; i++)
+				table[i] = BY_NAME.get(fields[i].toString());
+			FIELDS.put(type, table);
+		}
+	}
+
 	protected SyntaxGetter getter;
 	public JsonSyntaxConverter(SyntaxGetter getter) {
 		this.getter = getter;
 	}
 
 	public Syntax fromJson(JsonObject json) {
-		String typeName = getAsString(json, Syntax.Field.TYPE);
-		if (typeName == null)
-			return null;
-		Syntax.Type type = Syntax.Type.getByName(typeName);
+		JsonElement typeName = json.get(Syntax.Field.TYPE.toString());
+		Syntax.Type type = typeName != null && typeName.isJsonPrimitive() ? Syntax.Type.getByName(typeName.getAsString()) : null;
 		if (type == null)
 			return null;
 		Syntax s = new Syntax(type);
-		s.setJson(json);
-		for (Syntax.Field field : type.getFields()) {
-			JsonElement element = json.get(field.toString());
-			if (element == null)
+		for (FieldCodec codec : FIELDS.get(type)) {
+			JsonElement element = json.get(codec.name);
+			if (element == null || element.isJsonNull())
 				continue;
-			try {
-				s.set(field, element instanceof JsonArray ? getAsArray(element) :
-						field == Syntax.Field.ID ? element.getAsInt() :element.getAsString());
-			} catch (ClassCastException ignored) {
-
+			// A value of the wrong kind is ignored
+			switch (codec.kind) {
+				case ARRAY:
+					if (element.isJsonArray())
+						s.set(codec.field, getAsArray(element.getAsJsonArray()));
+					break;
+				case ID:
+					if (element.isJsonPrimitive())
+						s.set(codec.field, getAsId(element.getAsString()));
+					break;
+				case STRING:
+					if (element.isJsonPrimitive())
+						s.set(codec.field, element.getAsString());
+					break;
 			}
 		}
-		return s;
+		// After the fields, since changing a field clears it
+		return s.setJson(json);
 	}
 
 	public JsonObject fromSyntax(Syntax syntax) {
 		if (syntax.getJson() != null) //The syntax was previously loaded with a json object, so let's get it back
 			return syntax.getJson();
 		JsonObject json = new JsonObject();
-		Syntax.Type type = syntax.get(Syntax.Field.TYPE);
-		for (Syntax.Field field : type.getFields()) {
-			String[] array;
-			Object get = syntax.get(field);
-			if (field == Syntax.Field.ID) {
-				// A hacky way to check for the id, since it's the only integer value.
-				if (get != null && get instanceof Integer)
-					json.addProperty(field.toString(), (Integer) get);
-				continue;
-			} if (!(get instanceof String[]))
-				array = get != null ? new String[]{ get.toString()} : null;
-			else
-				array = (String[]) get;
-			set(json, field, array);
-		}
+		for (FieldCodec codec : FIELDS.get(syntax.<Syntax.Type>get(Syntax.Field.TYPE)))
+			set(json, codec, syntax);
 		return json;
 	}
 
-	private void set(JsonObject json, Syntax.Field field, String... array) {
-		if (field == null || json == null)
+	/**
+	 * Convert only some fields of a syntax, plus its id and type, which are needed to identify it.
+	 */
+	public JsonObject fromSyntax(Syntax syntax, Set<Syntax.Field> fields) {
+		JsonObject json = new JsonObject();
+		for (FieldCodec codec : FIELDS.get(syntax.<Syntax.Type>get(Syntax.Field.TYPE)))
+			if (isIncluded(codec, fields))
+				set(json, codec, syntax);
+		return json;
+	}
+
+	/**
+	 * Write a syntax as a json object.
+	 */
+	public void write(JsonWriter writer, Syntax syntax) throws IOException {
+		write(writer, syntax, null);
+	}
+
+	/**
+	 * Write only some fields of a syntax, plus its id and type, as a json object.
+	 * @param fields The fields, or null to write all of them.
+	 */
+	public void write(JsonWriter writer, Syntax syntax, Set<Syntax.Field> fields) throws IOException {
+		if (fields == null && syntax.getJson() != null) { // The same object that fromSyntax(Syntax) returns
+			JSON_ELEMENT.write(writer, syntax.getJson());
 			return;
-		if (StringUtils.isArrayEmpty(array)) {
-			if (field == Syntax.Field.SINCE)
-				json.addProperty(field.toString(), "1.0"); //A default value is used, only for version
-			else if (field == Syntax.Field.ADDON)
-				json.addProperty(field.toString(), getter.addon.getName());
-			else
-				json.add(field.toString(), JsonNull.INSTANCE);
-		} else {
-			JsonElement property;
-			switch (field) {
-				//These two fields are the only that returns as a json array
-				case CHANGERS:
-				case EVENT_VALUES:
-					property = new JsonArray();
-					for (String str : array)
-						((JsonArray)property).add(new JsonPrimitive(str));
-					break;
-				default:
-					StringJoiner sj = new StringJoiner("\n");
-					for (String str : array)
-						sj.add(str);
-					property = new JsonPrimitive(sj.toString());
+		}
+		writer.beginObject();
+		for (FieldCodec codec : FIELDS.get(syntax.<Syntax.Type>get(Syntax.Field.TYPE))) {
+			if (fields != null && !isIncluded(codec, fields))
+				continue;
+			Object value = syntax.get(codec.field);
+			switch (codec.kind) {
+				case ID:
+					if (value instanceof Integer)
+						writer.name(codec.name).value((Integer) value);
+					continue;
+				case TYPE:
+					writer.name(codec.name).value(value.toString());
+					continue;
+				case ARRAY:
+					if (!StringUtils.isArrayEmpty((String[]) value)) {
+						writer.name(codec.name).beginArray();
+						for (String str : (String[]) value)
+							writer.value(str);
+						writer.endArray();
+						continue;
+					}
 					break;
+				case STRING:
+					if (value != null && !((String) value).isEmpty()) {
+						writer.name(codec.name).value((String) value);
+						continue;
+					}
 			}
-			json.add(field.toString(), property);
+			writer.name(codec.name).value(getDefault(codec.field));
 		}
+		writer.endObject();
 	}
 
-	private String getAsString(JsonObject json, Syntax.Field field) {
-		JsonElement result = json != null && field != null ? json.get(field.toString()) : null;
-		return result != null && result.isJsonPrimitive() ? result.getAsString() : null;
-	}
-	private String[] getAsArray(JsonElement result) {
-		String[] array = null;
-		if (result != null && result instanceof JsonArray) {
-			array = new String[((JsonArray) result).size()];
-			int x = 0;
-			Iterator<JsonElement> it = ((JsonArray) result).iterator();
-			while (it.hasNext()) {
-				JsonElement entry = it.next();
-				if (entry instanceof JsonPrimitive)
-					array[x++] = entry.getAsString();
+	/**
+	 * Read a json object as a syntax. Unlike {@link #fromJson(JsonObject)}, the object isn't kept, only the known
+	 * fields are read.
+	 * @return The syntax, or null if it doesn't have a valid type.
+	 */
+	public Syntax read(JsonReader reader) throws IOException {
+		// The type may come after the other fields, so the values are kept until the object ends.
+		Object[] values = new Object[Syntax.Field.values().length];
+		reader.beginObject();
+		while (reader.hasNext()) {
+			FieldCodec codec = BY_NAME.get(reader.nextName());
+			JsonToken token = reader.peek();
+			if (codec == null || token == JsonToken.NULL || token == JsonToken.BEGIN_OBJECT) {
+				reader.skipValue();
+			} else if (token == JsonToken.BEGIN_ARRAY) {
+				List<String> array = new ArrayList<>();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					String value = nextString(reader);
+					if (value != null)
+						array.add(value);
+				}
+				reader.endArray();
+				if (codec.kind == Kind.ARRAY)
+					values[codec.field.ordinal()] = array.toArray(new String[array.size()]);
+			} else {
+				String value = nextString(reader);
+				if (codec.kind == Kind.ID)
+					values[codec.field.ordinal()] = getAsId(value);
+				else if (codec.kind != Kind.ARRAY)
+					values[codec.field.ordinal()] = value;
 			}
 		}
-		return array;
+		reader.endObject();
+		String typeName = (String) values[Syntax.Field.TYPE.ordinal()];
+		Syntax.Type type = typeName != null ? Syntax.Type.getByName(typeName) : null;
+		if (type == null)
+			return null;
+		Syntax s = new Syntax(type);
+		for (FieldCodec codec : FIELDS.get(type))
+			if (codec.kind != Kind.TYPE)
+				s.set(codec.field, values[codec.field.ordinal()]);
+		return s;
+	}
+
+	private void set(JsonObject json, FieldCodec codec, Syntax syntax) {
+		Object value = syntax.get(codec.field);
+		switch (codec.kind) {
+			case ID:
+				// A hacky way to check for the id, since it's the only integer value.
+				if (value instanceof Integer)
+					json.addProperty(codec.name, (Integer) value);
+				return;
+			case TYPE:
+				json.addProperty(codec.name, value.toString());
+				return;
+			case ARRAY:
+				//These two fields are the only that returns as a json array
+				if (!StringUtils.isArrayEmpty((String[]) value)) {
+					JsonArray array = new JsonArray();
+					for (String str : (String[]) value)
+						array.add(str != null ? new JsonPrimitive(str) : JsonNull.INSTANCE);
+					json.add(codec.name, array);
+					return;
+				}
+				break;
+			case STRING:
+				if (value != null && !((String) value).isEmpty()) {
+					json.addProperty(codec.name, (String) value);
+					return;
+				}
+		}
+		String def = getDefault(codec.field);
+		json.add(codec.name, def != null ? new JsonPrimitive(def) : JsonNull.INSTANCE);
+	}
+
+	// The value used when a field is empty
+	private String getDefault(Syntax.Field field) {
+		if (field == Syntax.Field.SINCE)
+			return "1.0"; //A default value is used, only for version
+		if (field == Syntax.Field.ADDON && getter != null && getter.addon != null)
+			return getter.addon.getName();
+		return null;
+	}
+
+	private static boolean isIncluded(FieldCodec codec, Set<Syntax.Field> fields) {
+		return codec.kind == Kind.ID || codec.kind == Kind.TYPE || fields.contains(codec.field);
+	}
+
+	private static Integer getAsId(String value) {
+		if (value == null)
+			return null;
+		try {
+			return Integer.valueOf(value);
+		} catch (NumberFormatException e) {
+			try {
+				return (int) Double.parseDouble(value);
+			} catch (NumberFormatException ignored) {
+				return null;
+			}
+		}
+	}
+
+	// A primitive as a string, anything else is skipped.
+	private static String nextString(JsonReader reader) throws IOException {
+		switch (reader.peek()) {
+			case STRING:
+			case NUMBER: return reader.nextString();
+			case BOOLEAN: return String.valueOf(reader.nextBoolean());
+			default:
+				reader.skipValue();
+				return null;
+		}
+	}
+
+	private String[] getAsArray(JsonArray result) {
+		List<String> array = new ArrayList<>(result.size());
+		for (JsonElement entry : result)
+			if (entry instanceof JsonPrimitive)
+				array.add(entry.getAsString());
+		return array.toArray(new String[array.size()]);
 	}
 }
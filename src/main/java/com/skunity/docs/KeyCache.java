@@ -0,0 +1,83 @@
+package com.skunity.docs;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Remembers when a key was last accepted by skUnity, so it doesn't need to be checked again in every start. Only a
+ * hash of the key is saved, next to the <code>addon.key</code> file, and the cache only applies to the same key.
+ * Rejected keys are never cached.
+ * @see Documentation#keyCache(long)
+ */
+class KeyCache {
+
+	private static final String HASH = "key-hash", VALIDATED = "validated";
+
+	private final File file;
+
+	KeyCache(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return When the key was last accepted, in milliseconds since epoch, or -1 if it wasn't cached.
+	 */
+	long getValidated(String key) {
+		if (key == null || !file.exists())
+			return -1;
+		Properties properties = new Properties();
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+			if (!hash(key).equals(properties.getProperty(HASH)))
+				return -1;
+			return Long.parseLong(properties.getProperty(VALIDATED, "-1"));
+		} catch (IOException | NumberFormatException e) {
+			// A broken cache is the same as no cache
+			return -1;
+		}
+	}
+
+	/**
+	 * Save that the key was accepted at the given time.
+	 */
+	void save(String key, long time) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(HASH, hash(key));
+		properties.setProperty(VALIDATED, Long.toString(time));
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs())
+			throw new IOException("Couldn't create the folder " + parent.getPath());
+		File temp = new File(parent, file.getName() + ".tmp");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+			properties.store(writer, "skUnity API key validation, delete it to validate the key again.");
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Forget the cached validation, so the key is checked again.
+	 */
+	void clear() {
+		if (file.exists() && !file.delete())
+			file.deleteOnExit();
+	}
+
+	// SHA-256 of the key in hex, so the key itself isn't copied to another file
+	static String hash(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest)
+				sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// Every JVM has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.skunity.docs;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A {@link Syntax} that only resolves a field from its Skript object when it is used for the first time, then it is
+ * kept. This way, a syntax that is already in skUnity only resolves the fields needed to compare it, and the expensive
+ * ones (such as the changers) are only resolved if the cheap ones are the same or if it will be uploaded.
+ * @see SyntaxGetter#getLazySyntax(Object)
+ */
+class LazySyntax extends Syntax {
+
+	private final SyntaxGetter getter;
+	private final Object syntaxObject;
+
+	//The fields that were resolved or set, guarded by this object
+	private final Set<Field> resolved = EnumSet.of(Field.TYPE, Field.ID);
+
+	LazySyntax(Type type, SyntaxGetter getter, Object syntaxObject) {
+		super(type);
+		this.getter = getter;
+		this.syntaxObject = syntaxObject;
+	}
+
+	@Override
+	public <T> T get(Field field) {
+		if (field == null)
+			return super.get(null);
+		synchronized (this) {
+			if (resolved.add(field))
+				super.set(field, getter.resolveValue(field, get(Field.TYPE), syntaxObject));
+			return super.get(field);
+		}
+	}
+
+	@Override
+	public <T> Syntax set(Field field, T object) throws ClassCastException {
+		if (field != null && object != null)
+			synchronized (this) {
+				resolved.add(field);
+				super.set(field, object);
+			}
+		return this;
+	}
+
+	/**
+	 * @return true if the field was already resolved or set, so getting it is cheap.
+	 */
+	synchronized boolean isResolved(Field field) {
+		return resolved.contains(field);
+	}
+
+	/**
+	 * Resolve all fields of its type that weren't used yet.
+	 * @return Its own instance.
+	 */
+	synchronized LazySyntax resolveAll() {
+		for (Field field : ((Type) get(Field.TYPE)).getFields())
+			get(field);
+		return this;
+	}
+}
@@ -0,0 +1,195 @@
+package com.skunity.docs;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptAddon;
+import ch.njol.skript.classes.ClassInfo;
+import ch.njol.skript.lang.SyntaxElementInfo;
+import ch.njol.skript.registrations.Classes;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the addon that owns each element registered in Skript. Since Skript doesn't track it, the owner is the addon
+ * whose package is the longest prefix of the element's class package (see {@link Documentation#loadAutomatically(Syntax.Type...)}
+ * for which class is checked for each type). Addons with syntaxes in more than one base package can register them with
+ * {@link #registerPackages(JavaPlugin, String...)}.
+ * <br>
+ * Skript registries are walked only once for all addons, and only the ones of the requested types, and each
+ * {@link Documentation} gets its own slice of the result with {@link #getElements(JavaPlugin, Syntax.Type)}.
+ */
+public final class OwnershipClassifier {
+
+	//Extra packages of each addon, by addon's name.
+	private static final Map<String, Set<String>> EXTRA_PACKAGES = new ConcurrentHashMap<>();
+
+	// Shared only after Skript stopped accepting registrations.
+	private static volatile OwnershipClassifier instance;
+
+	private final Node packages = new Node();
+	//The elements of each type by addon's name. A registry is only walked when its type is requested.
+	private final Map<Syntax.Type, Map<String, List<Object>>> elements = new EnumMap<>(Syntax.Type.class);
+
+	/**
+	 * Get the classifier of all registered elements.
+	 * @return The shared classifier, or a new one if Skript is still accepting registrations.
+	 */
+	public static OwnershipClassifier get() {
+		OwnershipClassifier classifier = instance;
+		if (classifier == null)
+			synchronized (OwnershipClassifier.class) {
+				classifier = instance;
+				if (classifier == null) {
+					classifier = new OwnershipClassifier();
+					if (!Skript.isAcceptRegistrations())
+						instance = classifier;
+				}
+			}
+		return classifier;
+	}
+
+	/**
+	 * Register extra base packages of an addon, in case its syntaxes aren't all in the same package level of its main
+	 * class.
+	 * @param addon The addon.
+	 * @param basePackages The base packages, such as <code>com.example.elements</code>.
+	 */
+	public static void registerPackages(JavaPlugin addon, String... basePackages) {
+		if (addon == null)
+			throw new NullPointerException("The addon can not be null.");
+		Collections.addAll(EXTRA_PACKAGES.computeIfAbsent(addon.getName(), k -> ConcurrentHashMap.newKeySet()), basePackages);
+		// It needs to be classified again
+		synchronized (OwnershipClassifier.class) {
+			instance = null;
+		}
+	}
+
+	private OwnershipClassifier() {
+		List<SkriptAddon> addons = new ArrayList<>(Skript.getAddons());
+		addons.add(Skript.getAddonInstance());
+		for (SkriptAddon addon : addons)
+			if (addon != null && addon.plugin != null)
+				packages.put(addon.plugin.getClass().getPackage().getName(), addon.plugin.getName());
+		for (Map.Entry<String, Set<String>> entry : EXTRA_PACKAGES.entrySet())
+			for (String basePackage : entry.getValue())
+				packages.put(basePackage, entry.getKey());
+	}
+
+	// The elements of a type, walking its registry the first time.
+	private synchronized Map<String, List<Object>> classify(Syntax.Type type) {
+		Map<String, List<Object>> slice = elements.get(type);
+		if (slice == null) {
+			slice = new HashMap<>();
+			Iterator<?> registry = getRegistry(type);
+			while (registry.hasNext()) {
+				Object info = registry.next();
+				String owner = getOwner(getSourceClass(info));
+				if (owner != null)
+					slice.computeIfAbsent(owner, k -> new ArrayList<>()).add(info);
+			}
+			elements.put(type, slice);
+		}
+		return slice;
+	}
+
+	private static Iterator<?> getRegistry(Syntax.Type type) {
+		switch (type) {
+			case EVENT: return Skript.getEvents().iterator();
+			case CONDITION: return Skript.getConditions().iterator();
+			case EFFECT: return Skript.getEffects().iterator();
+			case EXPRESSION: return Skript.getExpressions(); // Skript only gives an iterator, it isn't copied
+			default: return Classes.getClassInfos().iterator();
+		}
+	}
+
+	/**
+	 * Get the registered elements of an addon.
+	 * @param addon The addon.
+	 * @param type The type of the elements.
+	 * @return An unmodifiable list of {@link ch.njol.skript.lang.SkriptEventInfo}, {@link SyntaxElementInfo} or
+	 * {@link ClassInfo}, depending on the type.
+	 */
+	public List<Object> getElements(JavaPlugin addon, Syntax.Type type) {
+		return getElements(addon.getName(), type);
+	}
+
+	List<Object> getElements(String addon, Syntax.Type type) {
+		List<Object> list = classify(type).get(addon);
+		return list != null ? Collections.unmodifiableList(list) : Collections.emptyList();
+	}
+
+	/**
+	 * @return The name of all addons that have at least one registered element. All registries are walked.
+	 */
+	public Set<String> getAddons() {
+		Set<String> result = new HashSet<>();
+		for (Syntax.Type type : Syntax.Type.values())
+			result.addAll(classify(type).keySet());
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Get the addon that owns a class.
+	 * @param source The class of the element.
+	 * @return The name of the addon, or null if no addon has a matching package.
+	 */
+	public String getOwner(Class<?> source) {
+		if (source == null || source.getPackage() == null)
+			return null;
+		return packages.find(source.getPackage().getName());
+	}
+
+	/**
+	 * Get the class that is used to find the owner of a Skript info object.
+	 * @param info A {@link ch.njol.skript.lang.SkriptEventInfo}, {@link SyntaxElementInfo}, {@link ClassInfo} or {@link Class}.
+	 * @return The class of the element.
+	 */
+	static Class<?> getSourceClass(Object info) {
+		if (info instanceof SyntaxElementInfo)
+			return ((SyntaxElementInfo<?>) info).c;
+		if (info instanceof ClassInfo) {
+			ClassInfo<?> classInfo = (ClassInfo<?>) info;
+			if (classInfo.getParser() != null)
+				return classInfo.getParser().getClass();
+			if (classInfo.getChanger() != null)
+				return classInfo.getChanger().getClass();
+			if (classInfo.getSerializer() != null)
+				return classInfo.getSerializer().getClass();
+			return classInfo.getClass();
+		}
+		if (info instanceof Class)
+			return (Class<?>) info;
+		return null;
+	}
+
+	// A trie of package names, split by dots.
+	private static class Node {
+		private final Map<String, Node> children = new HashMap<>();
+		private String owner;
+
+		void put(String packageName, String owner) {
+			Node node = this;
+			for (String part : packageName.split("\\."))
+				node = node.children.computeIfAbsent(part, k -> new Node());
+			node.owner = owner;
+		}
+
+		// The owner of the longest registered package that is a prefix of the given one
+		String find(String packageName) {
+			Node node = this;
+			String result = null;
+			int start = 0;
+			while (node != null && start <= packageName.length()) {
+				int end = packageName.indexOf('.', start);
+				if (end < 0)
+					end = packageName.length();
+				node = node.children.get(packageName.substring(start, end));
+				if (node != null && node.owner != null)
+					result = node.owner;
+				start = end + 1;
+			}
+			return result;
+		}
+	}
+}
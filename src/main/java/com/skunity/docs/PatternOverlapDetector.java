@@ -0,0 +1,451 @@
+package com.skunity.docs;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.lang.SyntaxElementInfo;
+
+import java.util.*;
+
+/**
+ * Finds Skript patterns of different addons that can match the same input, which makes Skript parse slower and, in
+ * the worst case, use the wrong syntax (the one registered first wins).<br>
+ * Each pattern is compiled into a normalized form: all its optional parts and choices are expanded (up to
+ * {@link #MAX_EXPANSIONS}), spaces and case are normalized and split in tokens. A <code>%type%</code> becomes a slot
+ * that only matches a slot of the same type (<code>%players%</code> and <code>%player/entity%</code> share
+ * <code>player</code>), and a <code>&lt;regex&gt;</code> becomes a wildcard that matches one or more words. Two patterns
+ * overlap when there is an input that both token automatons accept.<br>
+ * To scale to tens of thousands of patterns, only patterns that may start (and end) with the same literal token are
+ * compared against each other.
+ * <pre><code>
+ * for (PatternOverlapDetector.Overlap overlap : PatternOverlapDetector.fromSkript().detect())
+ *     getLogger().warning(overlap.toString());
+ * </code></pre>
+ * @see Documentation#analyzePatterns()
+ */
+public class PatternOverlapDetector {
+
+	/**
+	 * How two patterns conflict.
+	 */
+	public enum Kind {
+		/**
+		 * Both patterns match exactly the same inputs, so the one registered later is never used.
+		 */
+		IDENTICAL,
+		/**
+		 * Some inputs are matched by both patterns.
+		 */
+		OVERLAP
+	}
+
+	/**
+	 * A conflict between two patterns. The first one is the one registered first.
+	 */
+	public static final class Overlap {
+		private final String addon1, pattern1, addon2, pattern2;
+		private final Syntax.Type type1, type2;
+		private final Kind kind;
+
+		Overlap(Entry e1, Entry e2, Kind kind) {
+			addon1 = e1.addon;
+			pattern1 = e1.pattern;
+			type1 = e1.type;
+			addon2 = e2.addon;
+			pattern2 = e2.pattern;
+			type2 = e2.type;
+			this.kind = kind;
+		}
+
+		public String getFirstAddon() {
+			return addon1;
+		}
+
+		public String getFirstPattern() {
+			return pattern1;
+		}
+
+		public Syntax.Type getFirstType() {
+			return type1;
+		}
+
+		public String getSecondAddon() {
+			return addon2;
+		}
+
+		public String getSecondPattern() {
+			return pattern2;
+		}
+
+		public Syntax.Type getSecondType() {
+			return type2;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		@Override
+		public String toString() {
+			return (kind == Kind.IDENTICAL ? "Identical" : "Overlapping") + " patterns: '" + pattern1 + "' (" + addon1
+					+ " " + type1 + ") and '" + pattern2 + "' (" + addon2 + " " + type2 + ")";
+		}
+	}
+
+	/**
+	 * The max amount of variations a single pattern is expanded to. Patterns with more than that are only partially
+	 * checked.
+	 */
+	public static final int MAX_EXPANSIONS = 512;
+
+	//A token that matches one or more words. Since no word can have this char, it is compared by reference.
+	static final String WILDCARD = "\u0000";
+	//The start of a type slot token, followed by its types separated by '/'. No word can have this char either.
+	static final char SLOT = '\u0001';
+
+	private final List<Entry> entries = new ArrayList<>();
+	private boolean sameAddon = false;
+
+	/**
+	 * Check also patterns of the same addon against each other. By default, only patterns of different addons are.
+	 * @param value true to check patterns of the same addon.
+	 * @return Its own instance
+	 */
+	public PatternOverlapDetector includeSameAddon(boolean value) {
+		sameAddon = value;
+		return this;
+	}
+
+	/**
+	 * Add a pattern to be checked. Patterns must be added in the same order they were registered in Skript.
+	 * Types aren't checked, since their patterns are Java regexes.
+	 * @param addon The addon's name of the pattern.
+	 * @param type The syntax type.
+	 * @param pattern The Skript pattern.
+	 * @return Its own instance
+	 */
+	public PatternOverlapDetector add(String addon, Syntax.Type type, String pattern) {
+		if (pattern != null && type != null && type != Syntax.Type.TYPE)
+			entries.add(new Entry(entries.size(), addon, type, pattern));
+		return this;
+	}
+
+	/**
+	 * Create a detector with all patterns registered in Skript. It should be used only after Skript stopped accepting
+	 * registrations.
+	 * @return A new detector.
+	 */
+	public static PatternOverlapDetector fromSkript() {
+		OwnershipClassifier classifier = OwnershipClassifier.get();
+		PatternOverlapDetector detector = new PatternOverlapDetector();
+		detector.addAll(classifier, Syntax.Type.EVENT, Skript.getEvents().iterator());
+		detector.addAll(classifier, Syntax.Type.CONDITION, Skript.getConditions().iterator());
+		detector.addAll(classifier, Syntax.Type.EFFECT, Skript.getEffects().iterator());
+		detector.addAll(classifier, Syntax.Type.EXPRESSION, Skript.getExpressions());
+		return detector;
+	}
+
+	private void addAll(OwnershipClassifier classifier, Syntax.Type type, Iterator<? extends SyntaxElementInfo<?>> infos) {
+		while (infos.hasNext()) {
+			SyntaxElementInfo<?> info = infos.next();
+			String owner = classifier.getOwner(info.c);
+			for (String pattern : info.patterns)
+				add(owner != null ? owner : "unknown", type, pattern);
+		}
+	}
+
+	/**
+	 * Find all patterns that overlap.
+	 * @return The conflicts, in no specific order.
+	 */
+	public List<Overlap> detect() {
+		// Index each expansion by its first token, or by its last token when it starts with a wildcard.
+		Map<String, List<Expansion>> byHead = new HashMap<>();
+		Map<String, List<Expansion>> wildByTail = new HashMap<>();
+		List<Expansion> wild = new ArrayList<>();
+		List<Expansion> all = new ArrayList<>();
+		for (Entry entry : entries)
+			for (String[] tokens : entry.getExpansions()) {
+				Expansion e = new Expansion(entry, tokens);
+				all.add(e);
+				if (e.head() != WILDCARD)
+					for (String key : keys(e.head()))
+						byHead.computeIfAbsent(key, k -> new ArrayList<>()).add(e);
+				else if (e.tail() != WILDCARD)
+					for (String key : keys(e.tail()))
+						wildByTail.computeIfAbsent(key, k -> new ArrayList<>()).add(e);
+				else
+					wild.add(e);
+			}
+		Set<Long> checked = new HashSet<>();
+		List<Overlap> result = new ArrayList<>();
+		for (Expansion e : all) {
+			if (e.head() != WILDCARD) {
+				// Same first token, each pair is checked from one side only.
+				for (String key : keys(e.head()))
+					check(e, byHead.get(key), true, checked, result);
+				// Starting with a wildcard, they are only checked from this side.
+				if (e.tail() != WILDCARD)
+					for (String key : keys(e.tail()))
+						check(e, wildByTail.getOrDefault(key, Collections.emptyList()), false, checked, result);
+				else
+					for (List<Expansion> list : wildByTail.values())
+						check(e, list, false, checked, result);
+				check(e, wild, false, checked, result);
+			} else {
+				if (e.tail() != WILDCARD)
+					for (String key : keys(e.tail()))
+						check(e, wildByTail.get(key), true, checked, result);
+				else
+					for (List<Expansion> list : wildByTail.values())
+						check(e, list, true, checked, result);
+				check(e, wild, true, checked, result);
+			}
+		}
+		return result;
+	}
+
+	private void check(Expansion e, List<Expansion> candidates, boolean symmetric, Set<Long> checked, List<Overlap> result) {
+		for (Expansion other : candidates) {
+			Entry e1 = e.entry, e2 = other.entry;
+			if (e1.id == e2.id || symmetric && e1.id > e2.id)
+				continue;
+			if (e1.id > e2.id) {
+				e1 = other.entry;
+				e2 = e.entry;
+			}
+			if (!e1.isComparable(e2) || !sameAddon && Objects.equals(e1.addon, e2.addon))
+				continue;
+			long pair = (long) e1.id << 32 | e2.id;
+			if (checked.contains(pair) || !overlaps(e.tokens, other.tokens))
+				continue;
+			checked.add(pair);
+			result.add(new Overlap(e1, e2, e1.getKey().equals(e2.getKey()) ? Kind.IDENTICAL : Kind.OVERLAP));
+		}
+	}
+
+	// The index keys of a token: a slot is indexed by each of its types, so slots that share one are compared.
+	private static List<String> keys(String token) {
+		if (!isSlot(token))
+			return Collections.singletonList(token);
+		List<String> keys = new ArrayList<>();
+		for (String type : token.substring(1).split("/"))
+			keys.add(SLOT + type);
+		return keys;
+	}
+
+	private static boolean isSlot(String token) {
+		return !token.isEmpty() && token.charAt(0) == SLOT;
+	}
+
+	// Words must be the same, and slots must have a type in common. A slot never matches a word.
+	private static boolean matches(String t1, String t2) {
+		if (t1.equals(t2))
+			return true;
+		if (!isSlot(t1) || !isSlot(t2))
+			return false;
+		List<String> types = Arrays.asList(t1.substring(1).split("/"));
+		for (String type : t2.substring(1).split("/"))
+			if (types.contains(type))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Check if there is an input accepted by both token sequences, where {@link #WILDCARD} accepts one or more tokens
+	 * and a type slot only accepts a slot that shares one of its types.
+	 */
+	static boolean overlaps(String[] a, String[] b) {
+		int n = a.length, m = b.length;
+		// State: position in a, inside a's wildcard, position in b, inside b's wildcard
+		boolean[] visited = new boolean[(n + 1) * 2 * (m + 1) * 2];
+		Deque<int[]> queue = new ArrayDeque<>();
+		queue.add(new int[]{0, 0, 0, 0});
+		while (!queue.isEmpty()) {
+			int[] s = queue.poll();
+			int i = s[0], ai = s[1], j = s[2], bj = s[3];
+			int key = ((i * 2 + ai) * (m + 1) + j) * 2 + bj;
+			if (visited[key])
+				continue;
+			visited[key] = true;
+			// Leaving a wildcard after it matched at least one token
+			if (ai == 1)
+				queue.add(new int[]{i + 1, 0, j, bj});
+			if (bj == 1)
+				queue.add(new int[]{i, ai, j + 1, 0});
+			if (i == n && ai == 0 && j == m && bj == 0)
+				return true;
+			if (i == n || j == m)
+				continue;
+			String ta = a[i], tb = b[j];
+			boolean wa = ta == WILDCARD, wb = tb == WILDCARD;
+			// Both must accept the same next word
+			if (!wa && !wb && !matches(ta, tb))
+				continue;
+			queue.add(new int[]{wa ? i : i + 1, wa ? 1 : 0, wb ? j : j + 1, wb ? 1 : 0});
+		}
+		return false;
+	}
+
+	/**
+	 * Expand a Skript pattern in all its variations, each one split in normalized tokens.
+	 */
+	static List<String[]> expand(String pattern) {
+		List<StringBuilder> variations = expand(SkriptPattern.parse(pattern).getRoot());
+		Set<String> seen = new LinkedHashSet<>();
+		List<String[]> result = new ArrayList<>();
+		for (StringBuilder variation : variations) {
+			List<String> tokens = new ArrayList<>();
+			StringBuilder word = new StringBuilder();
+			for (int x = 0; x <= variation.length(); x++) {
+				char c = x < variation.length() ? variation.charAt(x) : ' ';
+				if (c == WILDCARD.charAt(0) || c == SLOT || Character.isWhitespace(c)) {
+					if (word.length() > 0)
+						tokens.add(word.toString());
+					word.setLength(0);
+					// Two wildcards in a row are the same as one
+					if (c == WILDCARD.charAt(0) && (tokens.isEmpty() || tokens.get(tokens.size() - 1) != WILDCARD))
+						tokens.add(WILDCARD);
+					// A slot is a single token with its types, up to the next space
+					if (c == SLOT) {
+						int end = variation.indexOf(" ", x);
+						tokens.add(variation.substring(x, end));
+						x = end;
+					}
+				} else
+					word.append(Character.toLowerCase(c));
+			}
+			if (seen.add(String.join(" ", tokens)))
+				result.add(tokens.toArray(new String[tokens.size()]));
+		}
+		return result;
+	}
+
+	// A pattern to check
+	private static final class Entry {
+		final int id;
+		final String addon, pattern;
+		final Syntax.Type type;
+		private List<String[]> expansions;
+		private String key;
+
+		Entry(int id, String addon, Syntax.Type type, String pattern) {
+			this.id = id;
+			this.addon = addon;
+			this.type = type;
+			this.pattern = pattern;
+		}
+
+		List<String[]> getExpansions() {
+			if (expansions == null)
+				expansions = expand(pattern);
+			return expansions;
+		}
+
+		// All normalized variations, sorted, so identical patterns has the same key
+		String getKey() {
+			if (key == null) {
+				List<String> list = new ArrayList<>();
+				for (String[] tokens : getExpansions())
+					list.add(String.join(" ", tokens));
+				Collections.sort(list);
+				key = String.join("\n", list);
+			}
+			return key;
+		}
+
+		// Conditions and effects are both statements, anything else is only parsed with its own type
+		boolean isComparable(Entry other) {
+			return type == other.type || isStatement() && other.isStatement();
+		}
+
+		private boolean isStatement() {
+			return type == Syntax.Type.CONDITION || type == Syntax.Type.EFFECT;
+		}
+	}
+
+	private static final class Expansion {
+		final Entry entry;
+		final String[] tokens;
+
+		Expansion(Entry entry, String[] tokens) {
+			this.entry = entry;
+			this.tokens = tokens;
+		}
+
+		String head() {
+			return tokens.length > 0 ? tokens[0] : "";
+		}
+
+		String tail() {
+			return tokens.length > 0 ? tokens[tokens.length - 1] : "";
+		}
+	}
+
+	// Expands the optional parts and choices of a parsed pattern to plain variations. Types are slots and regexes are
+	// wildcards.
+	private static List<StringBuilder> expand(SkriptPattern.Node node) {
+		List<StringBuilder> result;
+		switch (node.getKind()) {
+			case LITERAL:
+				result = new ArrayList<>(1);
+				result.add(new StringBuilder(node.getText()));
+				return result;
+			case TYPE:
+				result = new ArrayList<>(1);
+				result.add(new StringBuilder().append(SLOT).append(slotTypes(node.getText())).append(' '));
+				return result;
+			case REGEX:
+				result = new ArrayList<>(1);
+				result.add(new StringBuilder(WILDCARD));
+				return result;
+			case SEQUENCE:
+				result = new ArrayList<>();
+				result.add(new StringBuilder());
+				for (SkriptPattern.Node child : node.getChildren())
+					result = concat(result, expand(child));
+				return result;
+			default: // Choices and optional parts
+				result = new ArrayList<>();
+				for (SkriptPattern.Node alternative : node.getChildren())
+					add(result, expand(alternative));
+				if (node.getKind() == SkriptPattern.Kind.OPTIONAL)
+					add(result, Collections.singletonList(new StringBuilder()));
+				return result;
+		}
+	}
+
+	// The types of a slot, without flags (%-~*type%) and time (%type@-1%), in singular and sorted: players/entity -> entity/player
+	static String slotTypes(String text) {
+		Set<String> types = new TreeSet<>();
+		for (String type : text.toLowerCase().split("/")) {
+			int start = 0;
+			while (start < type.length() && (type.charAt(start) == '-' || type.charAt(start) == '~' || type.charAt(start) == '*'))
+				start++;
+			int time = type.indexOf('@');
+			type = type.substring(start, time >= start ? time : type.length()).trim();
+			if (type.endsWith("ies"))
+				type = type.substring(0, type.length() - 3) + "y";
+			else if (type.endsWith("s") && type.length() > 1)
+				type = type.substring(0, type.length() - 1);
+			if (!type.isEmpty())
+				types.add(type);
+		}
+		return String.join("/", types);
+	}
+
+	private static void add(List<StringBuilder> result, List<StringBuilder> values) {
+		for (StringBuilder sb : values)
+			if (result.size() < MAX_EXPANSIONS)
+				result.add(sb);
+	}
+
+	private static List<StringBuilder> concat(List<StringBuilder> prefixes, List<StringBuilder> suffixes) {
+		List<StringBuilder> result = new ArrayList<>(Math.min(MAX_EXPANSIONS, prefixes.size() * suffixes.size()));
+		for (StringBuilder prefix : prefixes)
+			for (StringBuilder suffix : suffixes) {
+				if (result.size() >= MAX_EXPANSIONS)
+					return result;
+				result.add(new StringBuilder(prefix).append(suffix));
+			}
+		return result;
+	}
+}
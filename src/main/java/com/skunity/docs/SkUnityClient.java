@@ -0,0 +1,225 @@
+package com.skunity.docs;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The requests to the skUnity API. All open connections are closed right away when {@link #cancel()} is called.
+ */
+class SkUnityClient {
+
+	/**
+	 * The default base URL of the API. It can be changed with the system property <code>skunity.api.url</code>.
+	 */
+	static final String DEFAULT_API_URL = System.getProperty("skunity.api.url", "https://docs.skunity.com/api/");
+
+	// Timeouts of any request to skUnity, in milliseconds.
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final int READ_TIMEOUT = 30000;
+	// Static values
+	private static final String API_KEY = "?key=%s";
+	private static final String API_FUNCTION_CHECK_KEY= "&function=checkKey";
+	private static final String API_FUNCTION_GET_ADDON_SYNTAX = "&function=getAddonSyntax&addon=%s";
+	private static final String API_FUNCTION_POST_ADDON_SYNTAX = "&function=massCreate&arrayReturn=true";
+
+	private final String apiUrl, key;
+	private final JsonSyntaxConverter converter;
+
+	//Opened connections, so they can be closed right away when it is cancelled.
+	private final Set<HttpURLConnection> connections = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean cancelled = false;
+
+	SkUnityClient(String apiUrl, String key, JsonSyntaxConverter converter) {
+		this.apiUrl = apiUrl;
+		this.key = key;
+		this.converter = converter;
+	}
+
+	/**
+	 * @return true if skUnity accepts the key.
+	 */
+	boolean checkKey() throws IOException {
+		HttpURLConnection skunity = null;
+		try {
+			skunity = open(method(API_FUNCTION_CHECK_KEY), "GET");
+			skunity.setUseCaches(false);
+			// A rejected key may come with an error code, its answer is in the error stream then.
+			if (skunity.getResponseCode() >= 400)
+				return false;
+			JsonObject result = (JsonObject) new JsonParser().parse(new InputStreamReader(skunity.getInputStream()));
+			JsonElement response = result.get("response");
+			return response == null || !response.isJsonPrimitive() || response.getAsString().equals("success");
+		} finally {
+			close(skunity);
+		}
+	}
+
+	/**
+	 * Receives the downloaded syntaxes, one at a time.
+	 */
+	interface SyntaxConsumer {
+		void accept(Syntax syntax) throws IOException;
+	}
+
+	/**
+	 * @return All syntaxes of the addon in skUnity. The answer is read as a stream, one syntax at a time.
+	 */
+	List<Syntax> getAddonSyntax(String addon) throws IOException {
+		List<Syntax> downloaded = new ArrayList<>();
+		getAddonSyntax(addon, downloaded::add);
+		return downloaded;
+	}
+
+	/**
+	 * Give each syntax of the addon in skUnity to the consumer as soon as it is read, so the answer is never kept in
+	 * memory.
+	 */
+	void getAddonSyntax(String addon, SyntaxConsumer consumer) throws IOException {
+		HttpURLConnection skunity = null;
+		try {
+			skunity = open(method(API_FUNCTION_GET_ADDON_SYNTAX, URLEncoder.encode(addon, "UTF-8")), "GET");
+			boolean found = false;
+			try (JsonReader reader = new JsonReader(new InputStreamReader(skunity.getInputStream(), StandardCharsets.UTF_8))) {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if (!reader.nextName().equals("result") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+						reader.skipValue();
+						continue;
+					}
+					found = true;
+					reader.beginArray();
+					while (reader.hasNext()) {
+						checkCancelled();
+						if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+							reader.skipValue();
+							continue;
+						}
+						Syntax syntax = converter.read(reader);
+						if (syntax != null)
+							consumer.accept(syntax);
+					}
+					reader.endArray();
+				}
+			} catch (IllegalStateException e) { // Thrown by the reader when the answer isn't the expected json
+				throw new IOException("skUnity answered with an invalid json", e);
+			}
+			if (!found)
+				throw new IOException("skUnity didn't answer with the syntaxes of " + addon);
+		} finally {
+			close(skunity);
+		}
+	}
+
+	/**
+	 * Post the syntaxes to skUnity. They are written straight from the syntaxes, no json object is created.
+	 * @param syntaxes The syntaxes that are sent with all their fields.
+	 * @param edits The edits that are sent with only their changed fields.
+	 * @return false if skUnity answers with an error. If there are edits, an answer that isn't a json object is also
+	 * false, since skUnity may not have understood the changed fields.
+	 */
+	boolean massCreate(Collection<Syntax> syntaxes, Collection<SyncPlan.Edit> edits) throws IOException {
+		StringWriter json = new StringWriter();
+		try (JsonWriter writer = new JsonWriter(json)) {
+			writer.beginArray();
+			for (Syntax syntax : syntaxes)
+				converter.write(writer, syntax);
+			for (SyncPlan.Edit edit : edits)
+				converter.write(writer, edit.getSyntax(), edit.getChangedFields());
+			writer.endArray();
+		}
+		return massCreate(json.toString(), !edits.isEmpty());
+	}
+
+	private boolean massCreate(String array, boolean partial) throws IOException {
+		checkCancelled();
+		HttpURLConnection skunity = null;
+		try {
+			// Encode the syntaxes as an array data
+			String data = "data=" + URLEncoder.encode(array, "UTF-8");
+			skunity = open(method(API_FUNCTION_POST_ADDON_SYNTAX), "POST");
+			skunity.addRequestProperty("Content-Length", data.length() + "");
+			skunity.setDoOutput(true);
+			DataOutputStream output = new DataOutputStream(skunity.getOutputStream());
+			output.write(data.getBytes("UTF-8"));
+			output.flush();
+			output.close();
+			// Wait for skUnity to answer, so the connection isn't closed before it receives everything.
+			if (skunity.getResponseCode() >= 400)
+				return false;
+			JsonElement result = new JsonParser().parse(new InputStreamReader(skunity.getInputStream()));
+			if (partial && !result.isJsonObject())
+				return false;
+			JsonElement response = result.isJsonObject() ? result.getAsJsonObject().get("response") : null;
+			return response == null || !response.isJsonPrimitive() || !response.getAsString().equals("error");
+		} catch (JsonParseException e) {
+			// Nothing to check in the answer, but it doesn't confirm that the changed fields were understood
+			return !partial;
+		} finally {
+			close(skunity);
+		}
+	}
+
+	/**
+	 * Close all open connections. Any request after it throws {@link CancellationException}.
+	 */
+	void cancel() {
+		cancelled = true;
+		for (HttpURLConnection connection : connections)
+			connection.disconnect();
+		connections.clear();
+	}
+
+	boolean isCancelled() {
+		return cancelled;
+	}
+
+	void checkCancelled() {
+		if (cancelled || Thread.currentThread().isInterrupted())
+			throw new CancellationException();
+	}
+
+	// Opens a connection to skUnity that will be closed if it is cancelled meanwhile.
+	private HttpURLConnection open(String url, String requestMethod) throws IOException {
+		checkCancelled();
+		HttpURLConnection skunity = (HttpURLConnection) new URL(url).openConnection();
+		connections.add(skunity);
+		skunity.setConnectTimeout(CONNECT_TIMEOUT);
+		skunity.setReadTimeout(READ_TIMEOUT);
+		skunity.addRequestProperty("Connection", "close");
+		skunity.setRequestProperty("Content-Type", "application/json");
+		skunity.setRequestProperty("User-Agent", "skUnity API Documentation/" + Documentation.VERSION);
+		skunity.setRequestMethod(requestMethod);
+		// It could be cancelled before it was added to the connections.
+		if (cancelled) {
+			close(skunity);
+			throw new CancellationException();
+		}
+		return skunity;
+	}
+
+	private void close(HttpURLConnection skunity) {
+		if (skunity != null) {
+			connections.remove(skunity);
+			skunity.disconnect();
+		}
+	}
+
+	private String method(String method, String... args) {
+		return apiUrl + String.format(API_KEY, key) + String.format(method, (Object[]) args);
+	}
+}
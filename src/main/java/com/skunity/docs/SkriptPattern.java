@@ -0,0 +1,557 @@
+package com.skunity.docs;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed Skript pattern, such as <code>[the] (1¦first|2¦last) %number% of %objects%</code>. The pattern is an
+ * immutable tree of {@link Node}s: sequences, optional parts (<code>[...]</code>), choices (<code>(a|b)</code>),
+ * types (<code>%type%</code>), regexes (<code>&lt;.+&gt;</code>) and literal text, with the parse marks
+ * (<code>1¦</code>) of each alternative and the escapes already resolved.
+ * <br>
+ * Patterns are cached by their string, so the same pattern is only parsed once and shared by all syntaxes that have
+ * it. Two patterns are equal if they have the same structure: parse marks and repeated spaces don't change what a
+ * pattern matches, so they aren't compared.
+ * <pre><code>
+ * SkriptPattern.parse("(1¦one|2¦two) of %player%").toFriendlyString(); // (one|two) of %player%
+ * SkriptPattern.fromRegex("some ?example(s)?").toString(); // some[ ]example[s]
+ * </code></pre>
+ */
+public final class SkriptPattern {
+
+	/**
+	 * The kind of a node.
+	 */
+	public enum Kind {
+		/**
+		 * A plain text, its escapes are already resolved.
+		 */
+		LITERAL,
+		/**
+		 * A <code>%type%</code>, its text is what is inside the percent signs.
+		 */
+		TYPE,
+		/**
+		 * A <code>&lt;regex&gt;</code>, its text is the regex.
+		 */
+		REGEX,
+		/**
+		 * A <code>[optional]</code> part, its children are the alternatives.
+		 */
+		OPTIONAL,
+		/**
+		 * A <code>(choice|other choice)</code>, its children are the alternatives.
+		 */
+		CHOICE,
+		/**
+		 * A sequence of nodes, an alternative of a choice or optional part. It may have a parse mark.
+		 */
+		SEQUENCE
+	}
+
+	/**
+	 * A node of a pattern.
+	 */
+	public static final class Node {
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		private final Kind kind;
+		private final String text;
+		private final int mark;
+		private final Node[] children;
+		private final int hash;
+
+		private Node(Kind kind, String text, int mark, Node[] children) {
+			this.kind = kind;
+			this.text = text;
+			this.mark = mark;
+			this.children = children;
+			// The mark is not part of the structure
+			hash = 31 * (31 * kind.hashCode() + Objects.hashCode(text)) + Arrays.hashCode(children);
+		}
+
+		/**
+		 * @return The kind of the node.
+		 */
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return The text of a {@link Kind#LITERAL}, {@link Kind#TYPE} or {@link Kind#REGEX}, null for other kinds.
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * @return The parse mark of a {@link Kind#SEQUENCE}, or -1 if it doesn't have one.
+		 */
+		public int getMark() {
+			return mark;
+		}
+
+		/**
+		 * @return The nodes of a sequence, or the alternatives of a choice or optional part.
+		 */
+		public List<Node> getChildren() {
+			return Collections.unmodifiableList(Arrays.asList(children));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Node))
+				return false;
+			Node other = (Node) obj;
+			return hash == other.hash && kind == other.kind && Objects.equals(text, other.text)
+					&& Arrays.equals(children, other.children);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			print(sb, true, true);
+			return sb.toString();
+		}
+
+		private void print(StringBuilder sb, boolean marks, boolean escape) {
+			switch (kind) {
+				case LITERAL:
+					if (!escape) {
+						sb.append(text);
+						break;
+					}
+					for (int i = 0; i < text.length(); i++) {
+						char c = text.charAt(i);
+						if (SPECIAL.indexOf(c) >= 0)
+							sb.append('\\');
+						sb.append(c);
+					}
+					break;
+				case TYPE:
+					sb.append('%').append(text).append('%');
+					break;
+				case REGEX:
+					sb.append('<').append(text).append('>');
+					break;
+				case OPTIONAL:
+				case CHOICE:
+					sb.append(kind == Kind.OPTIONAL ? '[' : '(');
+					printAlternatives(sb, marks, escape);
+					sb.append(kind == Kind.OPTIONAL ? ']' : ')');
+					break;
+				case SEQUENCE:
+					if (marks && mark >= 0)
+						sb.append(mark).append('¦');
+					for (Node child : children)
+						child.print(sb, marks, escape);
+			}
+		}
+
+		private void printAlternatives(StringBuilder sb, boolean marks, boolean escape) {
+			for (int i = 0; i < children.length; i++) {
+				if (i > 0)
+					sb.append('|');
+				children[i].print(sb, marks, escape);
+			}
+		}
+	}
+
+	// The chars that need to be escaped in a literal
+	private static final String SPECIAL = "\\[]()|%<>";
+	// Distinct patterns are limited, but downloaded syntaxes may have any pattern, so it doesn't grow forever
+	private static final int MAX_CACHE = 16384;
+	private static final Map<String, SkriptPattern> CACHE = new ConcurrentHashMap<>();
+
+	private final String pattern;
+	private final Node root;
+	// Computed once, when needed
+	private String canonical, friendly;
+
+	private SkriptPattern(String pattern, Node root) {
+		this.pattern = pattern;
+		this.root = root;
+	}
+
+	/**
+	 * Parse a Skript pattern. Invalid patterns, such as unclosed brackets, are parsed as close as possible, it never
+	 * fails.
+	 * @param pattern The pattern.
+	 * @return The parsed pattern, shared with anything else that parsed the same string.
+	 */
+	public static SkriptPattern parse(String pattern) {
+		SkriptPattern result = CACHE.get(pattern);
+		if (result == null) {
+			result = new SkriptPattern(pattern, new Parser(pattern).parse());
+			if (CACHE.size() >= MAX_CACHE)
+				CACHE.clear();
+			SkriptPattern previous = CACHE.putIfAbsent(pattern, result);
+			if (previous != null)
+				result = previous;
+		}
+		return result;
+	}
+
+	/**
+	 * Parse all patterns of a syntax, one per line.
+	 * @param patterns The patterns, as in {@link Syntax.Field#PATTERN}. It can be null.
+	 * @return The parsed patterns.
+	 */
+	public static List<SkriptPattern> parseAll(String patterns) {
+		if (patterns == null || patterns.isEmpty())
+			return Collections.emptyList();
+		List<SkriptPattern> result = new ArrayList<>();
+		for (String pattern : patterns.split("\n"))
+			result.add(parse(pattern));
+		return result;
+	}
+
+	/**
+	 * Convert a Java regex, such as the user input patterns of a {@link ch.njol.skript.classes.ClassInfo}, to a Skript
+	 * pattern: <code>x?</code> and <code>x*</code> become optional, <code>(a|b)</code> choices, <code>\s</code> a space
+	 * and escaped chars literals. If the regex has anything else (such as <code>\d</code> or <code>.</code>), the
+	 * whole regex is kept as a Skript regex (<code>&lt;regex&gt;</code>).
+	 * @param regex The regex.
+	 * @return The pattern.
+	 */
+	public static SkriptPattern fromRegex(String regex) {
+		Node root;
+		try {
+			root = new RegexConverter(regex).convert();
+		} catch (IllegalArgumentException e) {
+			root = choice(Kind.CHOICE, sequence(-1, new Node(Kind.REGEX, regex, -1, Node.NO_CHILDREN)));
+		}
+		return new SkriptPattern(regex, root);
+	}
+
+	/**
+	 * @return The string that was parsed.
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return The root node, a {@link Kind#CHOICE} of the alternatives of the whole pattern (usually only one).
+	 */
+	public Node getRoot() {
+		return root;
+	}
+
+	/**
+	 * Get the pattern as it is shown to users: without parse marks, repeated spaces and escapes that aren't needed.
+	 * The chars that would change the structure stay escaped, so it parses to an equal pattern.
+	 * @return The friendly pattern, such as <code>(one|two) of %player%</code>.
+	 */
+	public String toFriendlyString() {
+		String result = friendly;
+		if (result == null)
+			friendly = result = print(false, true);
+		return result;
+	}
+
+	/**
+	 * @return A valid Skript pattern with the same structure. Equal patterns print the same.
+	 */
+	@Override
+	public String toString() {
+		String result = canonical;
+		if (result == null)
+			canonical = result = print(true, true);
+		return result;
+	}
+
+	// The canonical string without marks, it is the same for all equal patterns.
+	String toStructuralString() {
+		// Without the marks, it only has what is compared
+		return toFriendlyString();
+	}
+
+	@Override
+	public int hashCode() {
+		return root.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj || obj instanceof SkriptPattern && root.equals(((SkriptPattern) obj).root);
+	}
+
+	private String print(boolean marks, boolean escape) {
+		StringBuilder sb = new StringBuilder(pattern.length());
+		root.printAlternatives(sb, marks, escape);
+		return sb.toString();
+	}
+
+	private static Node sequence(int mark, Node... children) {
+		return new Node(Kind.SEQUENCE, null, mark, children);
+	}
+
+	private static Node choice(Kind kind, Node... alternatives) {
+		return new Node(kind, null, -1, alternatives);
+	}
+
+	// Builds the nodes of a sequence, merging consecutive literals.
+	private static final class SequenceBuilder {
+		private final List<Node> nodes = new ArrayList<>();
+		private final StringBuilder literal = new StringBuilder();
+		private final int mark;
+
+		SequenceBuilder(int mark) {
+			this.mark = mark;
+		}
+
+		void append(char c) {
+			if (Character.isWhitespace(c)) {
+				// Repeated spaces are the same as one
+				if (literal.length() > 0 ? literal.charAt(literal.length() - 1) == ' ' : endsWithSpace())
+					return;
+				c = ' ';
+			}
+			literal.append(c);
+		}
+
+		void add(Node node) {
+			if (node.kind == Kind.LITERAL) {
+				for (int i = 0; i < node.text.length(); i++)
+					append(node.text.charAt(i));
+				return;
+			}
+			flush();
+			nodes.add(node);
+		}
+
+		Node build() {
+			flush();
+			return sequence(mark, nodes.toArray(new Node[nodes.size()]));
+		}
+
+		private boolean endsWithSpace() {
+			if (nodes.isEmpty())
+				return false;
+			Node last = nodes.get(nodes.size() - 1);
+			return last.kind == Kind.LITERAL && last.text.endsWith(" ");
+		}
+
+		private void flush() {
+			if (literal.length() > 0) {
+				nodes.add(new Node(Kind.LITERAL, literal.toString(), -1, Node.NO_CHILDREN));
+				literal.setLength(0);
+			}
+		}
+	}
+
+	private static final class Parser {
+		private final String pattern;
+		private int pos = 0;
+
+		Parser(String pattern) {
+			this.pattern = pattern.trim();
+		}
+
+		Node parse() {
+			return choice(Kind.CHOICE, alternatives((char) 0));
+		}
+
+		private Node[] alternatives(char end) {
+			List<Node> result = new ArrayList<>(2);
+			while (true) {
+				result.add(sequence(end));
+				if (pos < pattern.length() && pattern.charAt(pos) == '|') {
+					pos++;
+					continue;
+				}
+				if (pos < pattern.length() && pattern.charAt(pos) == end)
+					pos++;
+				return result.toArray(new Node[result.size()]);
+			}
+		}
+
+		private Node sequence(char end) {
+			SequenceBuilder builder = new SequenceBuilder(readMark());
+			while (pos < pattern.length()) {
+				char c = pattern.charAt(pos);
+				if (c == '|' || c == end)
+					break;
+				pos++;
+				switch (c) {
+					case '[':
+						builder.add(choice(Kind.OPTIONAL, alternatives(']')));
+						break;
+					case '(':
+						builder.add(choice(Kind.CHOICE, alternatives(')')));
+						break;
+					case '%':
+					case '<':
+						int close = pattern.indexOf(c == '%' ? '%' : '>', pos);
+						if (close < 0) { // Not closed, so it's just a char
+							builder.append(c);
+							break;
+						}
+						builder.add(new Node(c == '%' ? Kind.TYPE : Kind.REGEX, pattern.substring(pos, close), -1, Node.NO_CHILDREN));
+						pos = close + 1;
+						break;
+					case '\\':
+						if (pos < pattern.length())
+							builder.append(pattern.charAt(pos++));
+						break;
+					default:
+						builder.append(c);
+				}
+			}
+			return builder.build();
+		}
+
+		// The "1¦" at the start of an alternative
+		private int readMark() {
+			int x = pos;
+			while (x < pattern.length() && Character.isDigit(pattern.charAt(x)))
+				x++;
+			if (x > pos && x < pattern.length() && pattern.charAt(x) == '¦') {
+				int mark;
+				try {
+					mark = Integer.parseInt(pattern.substring(pos, x));
+				} catch (NumberFormatException e) {
+					return -1;
+				}
+				pos = x + 1;
+				return mark;
+			}
+			return -1;
+		}
+	}
+
+	// Converts the simple parts of a Java regex, throws IllegalArgumentException for anything else.
+	private static final class RegexConverter {
+		private final String regex;
+		private int pos = 0;
+
+		RegexConverter(String regex) {
+			this.regex = regex;
+		}
+
+		Node convert() {
+			if (regex.startsWith("^"))
+				pos++;
+			Node root = choice(Kind.CHOICE, alternatives((char) 0));
+			if (pos < regex.length())
+				throw new IllegalArgumentException("Unexpected " + regex.charAt(pos));
+			return root;
+		}
+
+		private Node[] alternatives(char end) {
+			List<Node> result = new ArrayList<>(2);
+			while (true) {
+				result.add(sequence(end));
+				if (pos < regex.length() && regex.charAt(pos) == '|') {
+					pos++;
+					continue;
+				}
+				if (end != 0) {
+					if (pos >= regex.length() || regex.charAt(pos) != end)
+						throw new IllegalArgumentException("Unclosed group");
+					pos++;
+				}
+				return result.toArray(new Node[result.size()]);
+			}
+		}
+
+		private Node sequence(char end) {
+			SequenceBuilder builder = new SequenceBuilder(-1);
+			while (pos < regex.length()) {
+				char c = regex.charAt(pos);
+				if (c == '|' || c == end)
+					break;
+				if (c == '$' && pos == regex.length() - 1) {
+					pos++;
+					break;
+				}
+				Node atom = atom();
+				if (atom == null)
+					continue;
+				builder.add(quantify(atom));
+			}
+			return builder.build();
+		}
+
+		private Node atom() {
+			char c = regex.charAt(pos++);
+			switch (c) {
+				case '(':
+					if (regex.startsWith("?:", pos)) {
+						pos += 2;
+					} else if (regex.startsWith("?", pos)) {
+						// Only flags, such as (?i), are supported
+						int close = regex.indexOf(')', pos);
+						if (close < 0 || !regex.substring(pos + 1, close).matches("[a-zA-Z-]*"))
+							throw new IllegalArgumentException("Unsupported group");
+						pos = close + 1;
+						return null;
+					}
+					return choice(Kind.CHOICE, alternatives(')'));
+				case '[':
+					// Only a class of plain chars, such as [sS]
+					int close = regex.indexOf(']', pos);
+					if (close <= pos)
+						throw new IllegalArgumentException("Unsupported class");
+					List<Node> chars = new ArrayList<>();
+					for (char ch : regex.substring(pos, close).toCharArray()) {
+						if ("^-\\[".indexOf(ch) >= 0)
+							throw new IllegalArgumentException("Unsupported class");
+						chars.add(SkriptPattern.sequence(-1, literal(ch)));
+					}
+					pos = close + 1;
+					return choice(Kind.CHOICE, chars.toArray(new Node[chars.size()]));
+				case '\\':
+					if (pos >= regex.length())
+						throw new IllegalArgumentException("Unfinished escape");
+					char escaped = regex.charAt(pos++);
+					if (escaped == 's')
+						return literal(' ');
+					if (escaped == 'b')
+						return null;
+					if (Character.isLetterOrDigit(escaped))
+						throw new IllegalArgumentException("Unsupported escape");
+					return literal(escaped);
+				case '.':
+				case '{':
+				case '}':
+				case '^':
+				case '$':
+				case '?':
+				case '*':
+				case '+':
+					throw new IllegalArgumentException("Unsupported " + c);
+				default:
+					return literal(c);
+			}
+		}
+
+		private Node quantify(Node atom) {
+			if (pos >= regex.length())
+				return atom;
+			char c = regex.charAt(pos);
+			if (c != '?' && c != '*' && c != '+')
+				return atom;
+			pos++;
+			// Lazy and possessive quantifiers match the same
+			if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+'))
+				pos++;
+			if (c == '+')
+				return atom;
+			// [(a|b)] is the same as [a|b]
+			return atom.kind == Kind.CHOICE ? choice(Kind.OPTIONAL, atom.children) : choice(Kind.OPTIONAL, SkriptPattern.sequence(-1, atom));
+		}
+
+		private static Node literal(char c) {
+			return new Node(Kind.LITERAL, String.valueOf(c), -1, Node.NO_CHILDREN);
+		}
+	}
+}
@@ -17,16 +17,46 @@ class StringUtils {
 	static boolean isArrayEmpty(String... strings) {
 		if (strings != null)
 			for (String string : strings)
-				if (!string.isEmpty())
+				if (string != null && !string.isEmpty())
 					return false;
 		return true;
 	}
+	// Patterns are equal if they have the same structure, see SkriptPattern#equals
 	static boolean equalsPatterns(String s1, String s2) {
-		if (s1 != null)
-			s1 = s1.replaceAll("\\{\\{(.+?)\\|(.+?)\\|(.+?)}}", "$3");
-		if (s2 != null)
-			s2 = s2.replaceAll("\\{\\{(.+?)\\|(.+?)\\|(.+?)}}", "$3");
-		return equals(s1, s2);
+		s1 = normalizePattern(s1);
+		s2 = normalizePattern(s2);
+		return equals(s1, s2) || SkriptPattern.parseAll(s1).equals(SkriptPattern.parseAll(s2));
+	}
+	// Removes the skUnity links ({{type|name|text}}) of a pattern.
+	static String normalizePattern(String pattern) {
+		return pattern != null ? pattern.replaceAll("\\{\\{(.+?)\\|(.+?)\\|(.+?)}}", "$3") : null;
+	}
+	// Text is equal if only its whitespace is different: any run of whitespace (line endings, indentation) is the same
+	// as a single space, and it is ignored at the ends. It walks both strings, without creating normalized copies.
+	static boolean equalsText(String s1, String s2) {
+		if (s1 == null)
+			s1 = "";
+		if (s2 == null)
+			s2 = "";
+		int i = skipWhitespace(s1, 0), j = skipWhitespace(s2, 0);
+		while (i < s1.length() && j < s2.length()) {
+			boolean space1 = Character.isWhitespace(s1.charAt(i)), space2 = Character.isWhitespace(s2.charAt(j));
+			if (space1 != space2)
+				return false;
+			if (space1) {
+				i = skipWhitespace(s1, i);
+				j = skipWhitespace(s2, j);
+			} else if (s1.charAt(i++) != s2.charAt(j++)) {
+				return false;
+			}
+		}
+		// Only whitespace can be left
+		return skipWhitespace(s1, i) == s1.length() && skipWhitespace(s2, j) == s2.length();
+	}
+	static int skipWhitespace(String str, int index) {
+		while (index < str.length() && Character.isWhitespace(str.charAt(index)))
+			index++;
+		return index;
 	}
 	static boolean equals(String s1, String s2) {
 		if (s1 == null)
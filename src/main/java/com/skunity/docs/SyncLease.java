@@ -0,0 +1,194 @@
+package com.skunity.docs;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lease in a directory shared by many servers, so only one of them syncs an addon and the others read the syntaxes
+ * it published. The lease is a file created atomically (it fails if it already exists), and its holder touches it
+ * every third of the TTL while it is syncing. A lease that wasn't touched for longer than the TTL is stale: its holder
+ * stopped or crashed, and the next server can take it. Taking a stale lease is done while holding a lock of a sidecar
+ * file (<code>&lt;addon&gt;.lease.lock</code>), so only one server can replace it.
+ * <br>
+ * Once the sync succeeds, the holder publishes the syntaxes and stops touching the lease, without deleting it, so
+ * servers that start until it expires don't sync again. If the sync fails, the lease is deleted right away.
+ * @see Documentation#syncLease(File, long)
+ */
+class SyncLease {
+
+	private final File file, lock, snapshot;
+	private final long ttl;
+	//Identify this server and this sync, in case two of them share the same host.
+	private final String owner = ManagementFactory.getRuntimeMXBean().getName() + " " + UUID.randomUUID();
+
+	private ScheduledExecutorService heartbeat;
+	private volatile boolean held = false, completed = false;
+
+	/**
+	 * @param directory The shared directory.
+	 * @param addon The name of the addon, so each addon has its own lease.
+	 * @param ttl For how long the lease is valid after its last heartbeat, in milliseconds.
+	 */
+	SyncLease(File directory, String addon, long ttl) {
+		this.file = new File(directory, addon + ".lease");
+		this.lock = new File(directory, addon + ".lease.lock");
+		this.snapshot = new File(directory, addon + ".snapshot");
+		this.ttl = ttl;
+	}
+
+	/**
+	 * Try to take the lease, replacing it if it is stale.
+	 * @return true if this server holds the lease now, false if another server holds it.
+	 * @throws IOException if the directory can't be used.
+	 */
+	synchronized boolean acquire() throws IOException {
+		if (held)
+			return true;
+		Path path = file.toPath();
+		Files.createDirectories(path.getParent());
+		for (int attempt = 0; attempt < 3; attempt++) {
+			try {
+				Files.createFile(path);
+			} catch (FileAlreadyExistsException e) {
+				if (!isStale() || !removeStale())
+					return false;
+				continue;
+			}
+			try {
+				// The time is from the file system, the same clock of the published snapshot
+				long since = Files.getLastModifiedTime(path).toMillis();
+				Files.write(path, (owner + "\n" + since).getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				Files.deleteIfExists(path);
+				throw e;
+			}
+			held = true;
+			startHeartbeat();
+			return true;
+		}
+		return false;
+	}
+
+	// Deletes the lease if it is still stale, while holding the lock of the sidecar file. Without the lock, two
+	// servers could both find it stale, and the second one would delete the new lease of the first one.
+	private boolean removeStale() throws IOException {
+		try (FileChannel channel = FileChannel.open(lock.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock fileLock;
+			try {
+				fileLock = channel.tryLock();
+			} catch (OverlappingFileLockException e) { // Another sync of this server is taking it
+				fileLock = null;
+			}
+			if (fileLock == null) // Another server is taking it
+				return false;
+			try {
+				// It may have been replaced before this server got the lock
+				if (isStale())
+					Files.deleteIfExists(file.toPath());
+				return true;
+			} finally {
+				fileLock.release();
+			}
+		}
+	}
+
+	/**
+	 * @return true if this server still holds the lease. It is false if another server took it while it was stale.
+	 */
+	boolean isHeld() {
+		return held;
+	}
+
+	/**
+	 * @return The file where the holder publishes the syntaxes.
+	 */
+	File getSnapshotFile() {
+		return snapshot;
+	}
+
+	/**
+	 * @return When the current holder, this or another server, took the lease, as the file system time. It is -1 if
+	 * there is no lease or it can't be read.
+	 */
+	long getHolderSince() {
+		String[] content = read();
+		if (content == null || content.length < 2)
+			return -1;
+		try {
+			return Long.parseLong(content[1].trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Stop the heartbeat after a successful sync. The lease is kept until it expires.
+	 */
+	synchronized void complete() {
+		completed = true;
+		stopHeartbeat();
+	}
+
+	/**
+	 * Stop the heartbeat and, if the sync didn't complete, delete the lease so another server can take it.
+	 */
+	synchronized void release() {
+		stopHeartbeat();
+		if (held && !completed && isOwner())
+			file.delete();
+		held = false;
+	}
+
+	private boolean isStale() {
+		long modified = file.lastModified();
+		// 0 means that it was deleted meanwhile, so it can be created again
+		return modified == 0 || System.currentTimeMillis() - modified > ttl;
+	}
+
+	private boolean isOwner() {
+		String[] content = read();
+		return content != null && owner.equals(content[0]);
+	}
+
+	// The owner and when it took the lease, in two lines
+	private String[] read() {
+		try {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).split("\n");
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void startHeartbeat() {
+		heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "skUnity API lease of " + file.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		long period = Math.max(1, ttl / 3);
+		heartbeat.scheduleAtFixedRate(() -> {
+			if (!isOwner() || !file.setLastModified(System.currentTimeMillis()))
+				synchronized (this) {
+					held = false;
+					stopHeartbeat();
+				}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	private void stopHeartbeat() {
+		if (heartbeat != null) {
+			heartbeat.shutdownNow();
+			heartbeat = null;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package com.skunity.docs;
+
+import com.google.gson.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The result of comparing the local syntaxes with the ones in skUnity: what needs to be added, what needs to be edited
+ * (and which fields changed) and what is only in skUnity (orphans).<br>
+ * A plan can be saved to a file with {@link Documentation#plan()} and sent later with {@link Documentation#apply(File)},
+ * so the syntaxes don't need to be loaded again in the server that sends them.
+ */
+public final class SyncPlan {
+
+	/**
+	 * A syntax that is in skUnity, but has different values locally.
+	 */
+	public static final class Edit {
+		private final Syntax syntax, previous;
+		private final Set<Syntax.Field> changes;
+
+		Edit(Syntax syntax, Syntax previous, Set<Syntax.Field> changes) {
+			this.syntax = syntax;
+			this.previous = previous;
+			this.changes = Collections.unmodifiableSet(changes);
+		}
+
+		/**
+		 * @return A copy of the local syntax, with the id of the one in skUnity.
+		 */
+		public Syntax getSyntax() {
+			return syntax;
+		}
+
+		/**
+		 * @return The syntax in skUnity. If the plan was read from a file, only the changed fields are present.
+		 */
+		public Syntax getPrevious() {
+			return previous;
+		}
+
+		/**
+		 * @return The fields that are different from skUnity.
+		 */
+		public Set<Syntax.Field> getChangedFields() {
+			return changes;
+		}
+	}
+
+	private final String addon;
+	private final long created;
+	private final List<Syntax> adds;
+	private final List<Edit> edits;
+	private final List<Syntax> orphans;
+
+	SyncPlan(String addon, long created, List<Syntax> adds, List<Edit> edits, List<Syntax> orphans) {
+		this.addon = addon;
+		this.created = created;
+		this.adds = Collections.unmodifiableList(adds);
+		this.edits = Collections.unmodifiableList(edits);
+		this.orphans = Collections.unmodifiableList(orphans);
+	}
+
+	/**
+	 * Compare local syntaxes with the ones in skUnity. A local syntax matches a downloaded one if they have the same
+	 * type and the same name or patterns.
+	 */
+	static SyncPlan create(String addon, List<Syntax> local, List<Syntax> remote) {
+		return create(addon, local, remote, () -> {});
+	}
+
+	/**
+	 * The same of {@link #create(String, List, List)}, but it runs the checkpoint before each local syntax, when no
+	 * syntax is being resolved.
+	 */
+	static SyncPlan create(String addon, List<Syntax> local, List<Syntax> remote, Runnable checkpoint) {
+		List<Syntax> adds = new ArrayList<>();
+		List<Edit> edits = new ArrayList<>();
+		Set<Syntax> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (Syntax syntax1 : local) {
+			checkpoint.run();
+			Syntax match = null;
+			for (Syntax syntax2 : remote) {
+				if (!syntax1.get(Syntax.Field.TYPE).equals(syntax2.get(Syntax.Field.TYPE)))
+					continue;
+				if (StringUtils.equals(syntax1.get(Syntax.Field.NAME), syntax2.get(Syntax.Field.NAME))
+						|| StringUtils.equalsPatterns(syntax1.get(Syntax.Field.PATTERN), syntax2.get(Syntax.Field.PATTERN))) {
+					match = syntax2;
+					break;
+				}
+			}
+			if (match == null) {
+				// If it couldn't find one, it will be added.
+				adds.add(syntax1);
+				continue;
+			}
+			matched.add(match);
+			if (syntax1.equals(match)) // It means that if they are the same, they don't need to be added/edited.
+				continue;
+			// A copy of the local syntax gets the id of the downloaded one, so it will be edited instead of added. The
+			// local syntax itself is never changed, since it is shared with the index.
+			Syntax edited = syntax1.copy().set(Syntax.Field.ID, match.get(Syntax.Field.ID));
+			edits.add(new Edit(edited, match, syntax1.getChangedFields(match)));
+		}
+		List<Syntax> orphans = new ArrayList<>();
+		for (Syntax syntax : remote)
+			if (!matched.contains(syntax))
+				orphans.add(syntax);
+		return new SyncPlan(addon, System.currentTimeMillis(), adds, edits, orphans);
+	}
+
+	/**
+	 * @return The name of the addon.
+	 */
+	public String getAddon() {
+		return addon;
+	}
+
+	/**
+	 * @return When the plan was created, in milliseconds.
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return The syntaxes that are not in skUnity.
+	 */
+	public List<Syntax> getAdds() {
+		return adds;
+	}
+
+	/**
+	 * @return The syntaxes that were changed locally.
+	 */
+	public List<Edit> getEdits() {
+		return edits;
+	}
+
+	/**
+	 * @return The syntaxes that are in skUnity, but weren't found locally. They are never removed by the API.
+	 */
+	public List<Syntax> getOrphans() {
+		return orphans;
+	}
+
+	/**
+	 * @return All syntaxes that needs to be sent to skUnity: the added and the edited ones.
+	 */
+	public List<Syntax> getSyntaxes() {
+		List<Syntax> result = new ArrayList<>(adds.size() + edits.size());
+		result.addAll(adds);
+		for (Edit edit : edits)
+			result.add(edit.getSyntax());
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * @return true if there is nothing to send.
+	 */
+	public boolean isEmpty() {
+		return adds.isEmpty() && edits.isEmpty();
+	}
+
+	void write(File file, JsonSyntaxConverter converter) throws IOException {
+		JsonObject json = new JsonObject();
+		json.addProperty("addon", addon);
+		json.addProperty("version", Documentation.VERSION);
+		json.addProperty("created", created);
+		json.add("adds", toArray(adds, converter));
+		JsonArray array = new JsonArray();
+		for (Edit edit : edits) {
+			JsonObject entry = new JsonObject();
+			JsonObject previous = converter.fromSyntax(edit.previous);
+			JsonObject changes = new JsonObject();
+			for (Syntax.Field field : edit.changes) {
+				JsonElement value = previous.get(field.toString());
+				changes.add(field.toString(), value != null ? value : JsonNull.INSTANCE);
+			}
+			entry.add("syntax", converter.fromSyntax(edit.syntax));
+			entry.add("changes", changes);
+			array.add(entry);
+		}
+		json.add("edits", array);
+		json.add("orphans", toArray(orphans, converter));
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs())
+			throw new IOException("Couldn't create the folder " + parent);
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			new Gson().toJson(json, writer);
+		}
+	}
+
+	/**
+	 * Read a plan written by {@link #write(File, JsonSyntaxConverter)}.
+	 * @throws IOException if the file can't be read, or if it isn't a valid plan.
+	 */
+	static SyncPlan read(File file, JsonSyntaxConverter converter) throws IOException {
+		JsonObject json;
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			json = new JsonParser().parse(reader).getAsJsonObject();
+		} catch (JsonParseException | IllegalStateException e) {
+			throw new IOException("The plan file " + file + " is not valid", e);
+		}
+		try {
+			List<Edit> edits = new ArrayList<>();
+			for (JsonElement element : require(json, "edits", file).getAsJsonArray()) {
+				JsonObject entry = element.getAsJsonObject();
+				JsonObject syntaxJson = require(entry, "syntax", file).getAsJsonObject();
+				Syntax syntax = converter.fromJson(syntaxJson);
+				// The previous syntax only has the changed fields, plus what is needed to identify it.
+				JsonObject previousJson = new JsonObject();
+				Set<Syntax.Field> changes = EnumSet.noneOf(Syntax.Field.class);
+				for (Map.Entry<String, JsonElement> change : require(entry, "changes", file).getAsJsonObject().entrySet()) {
+					previousJson.add(change.getKey(), change.getValue());
+					for (Syntax.Field field : Syntax.Field.values())
+						if (field.toString().equals(change.getKey()))
+							changes.add(field);
+				}
+				previousJson.add(Syntax.Field.TYPE.toString(), syntaxJson.get(Syntax.Field.TYPE.toString()));
+				previousJson.add(Syntax.Field.ID.toString(), syntaxJson.get(Syntax.Field.ID.toString()));
+				if (syntax != null)
+					edits.add(new Edit(syntax, converter.fromJson(previousJson), changes));
+			}
+			return new SyncPlan(require(json, "addon", file).getAsString(), require(json, "created", file).getAsLong(),
+					fromArray(json.get("adds"), converter), edits, fromArray(json.get("orphans"), converter));
+		} catch (JsonParseException | IllegalStateException | ClassCastException | UnsupportedOperationException
+				| NumberFormatException e) {
+			// The getAs methods throw these when a value has the wrong kind
+			throw new IOException("The plan file " + file + " is not valid", e);
+		}
+	}
+
+	private static JsonElement require(JsonObject json, String name, File file) throws IOException {
+		JsonElement element = json.get(name);
+		if (element == null || element.isJsonNull())
+			throw new IOException("The plan file " + file + " is not valid, it has no \"" + name + "\"");
+		return element;
+	}
+
+	private static JsonArray toArray(List<Syntax> syntaxes, JsonSyntaxConverter converter) {
+		JsonArray array = new JsonArray();
+		for (Syntax syntax : syntaxes)
+			array.add(converter.fromSyntax(syntax));
+		return array;
+	}
+
+	private static List<Syntax> fromArray(JsonElement array, JsonSyntaxConverter converter) {
+		List<Syntax> result = new ArrayList<>();
+		if (array != null && !array.isJsonNull())
+			for (JsonElement element : array.getAsJsonArray()) {
+				Syntax syntax = converter.fromJson(element.getAsJsonObject());
+				if (syntax != null)
+					result.add(syntax);
+			}
+		return result;
+	}
+}
@@ -0,0 +1,96 @@
+package com.skunity.docs;
+
+/**
+ * The outcome of a sync started with {@link Documentation#start()}. If the sync is cancelled (by
+ * {@link Documentation#cancel()} or when your addon is disabled), the future completes with a
+ * {@link java.util.concurrent.CancellationException} instead of a result.
+ */
+public final class SyncResult {
+
+	/**
+	 * How a sync finished.
+	 */
+	public enum Status {
+		/**
+		 * New or edited syntaxes were sent to skUnity.
+		 */
+		SUCCESS,
+		/**
+		 * All local syntaxes are already in skUnity, nothing was sent.
+		 */
+		UP_TO_DATE,
+		/**
+		 * There is no <code>addon.key</code> file, so nothing was done.
+		 */
+		NO_KEY,
+		/**
+		 * The key was rejected by skUnity.
+		 */
+		INVALID_KEY,
+		/**
+		 * Another server holds the sync lease, so the syntaxes were read from its snapshot instead.
+		 * @see Documentation#syncLease(java.io.File, long)
+		 */
+		DELEGATED,
+		/**
+		 * Something went wrong while talking with skUnity, see {@link #getError()}.
+		 */
+		FAILED
+	}
+
+	private final Status status;
+	private final int added, edited;
+	private final Throwable error;
+
+	private SyncResult(Status status, int added, int edited, Throwable error) {
+		this.status = status;
+		this.added = added;
+		this.edited = edited;
+		this.error = error;
+	}
+
+	static SyncResult of(Status status) {
+		return new SyncResult(status, 0, 0, null);
+	}
+
+	static SyncResult success(int added, int edited) {
+		return new SyncResult(added + edited == 0 ? Status.UP_TO_DATE : Status.SUCCESS, added, edited, null);
+	}
+
+	static SyncResult failed(Throwable error) {
+		return new SyncResult(Status.FAILED, 0, 0, error);
+	}
+
+	/**
+	 * @return How the sync finished.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return The amount of syntaxes that were added to skUnity.
+	 */
+	public int getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return The amount of syntaxes that were edited in skUnity.
+	 */
+	public int getEdited() {
+		return edited;
+	}
+
+	/**
+	 * @return The error that made the sync fail, null if the status is not {@link Status#FAILED}.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return "SyncResult{status=" + status + ", added=" + added + ", edited=" + edited + "}";
+	}
+}
@@ -0,0 +1,59 @@
+package com.skunity.docs;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads that talk with skUnity. This is the Java 8 version: platform daemon threads.<br>
+ * When the jar is built with JDK 21 or newer, it is a multi-release jar, and in Java 21 or newer this class is replaced
+ * by the one in <code>src/main/java21</code>, which creates virtual threads instead, so the blocking requests don't hold
+ * a platform thread each. Both versions must have the same members.
+ */
+final class SyncThreads {
+
+	private SyncThreads() {}
+
+	/**
+	 * @return If the threads are virtual.
+	 */
+	static boolean isVirtual() {
+		return false;
+	}
+
+	/**
+	 * @return An executor that runs everything in the same thread, in order.
+	 */
+	static ExecutorService newSingleThread(String name) {
+		return Executors.newSingleThreadExecutor(factory(name, false));
+	}
+
+	/**
+	 * @return An executor that runs everything in the same platform thread, in order, even in the Java 21 version.
+	 */
+	static ExecutorService newPlatformThread(String name) {
+		return newSingleThread(name);
+	}
+
+	/**
+	 * @return An executor that runs up to the given amount of tasks at the same time.
+	 */
+	static ExecutorService newPool(int threads, String name) {
+		return Executors.newFixedThreadPool(threads, factory(name, true));
+	}
+
+	/**
+	 * @return An executor for short tasks that nothing waits for.
+	 */
+	static Executor background() {
+		return ForkJoinPool.commonPool();
+	}
+
+	private static ThreadFactory factory(String name, boolean numbered) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			Thread thread = new Thread(r, numbered ? name + " #" + count.incrementAndGet() : name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
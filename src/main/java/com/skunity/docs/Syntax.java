@@ -7,6 +7,10 @@ import com.skunity.docs.annotation.Dependency;
 import org.bukkit.Bukkit;
 
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * An object to represent a Skript syntax. It can be created manually, setting each value, or with {@link SyntaxGetter}
@@ -208,7 +212,31 @@ public class Syntax {
 	 * @return True if the syntax has at least a name and a pattern.
 	 */
 	public boolean isValid() {
-		return StringUtils.hasEmptyString(name, patterns);
+		return StringUtils.hasEmptyString(get(Field.NAME), get(Field.PATTERN));
+	}
+
+	/**
+	 * A copy with the same values, which can be changed without changing this one. A lazy syntax resolves all its
+	 * fields.
+	 * @return The copy.
+	 */
+	Syntax copy() {
+		Syntax copy = new Syntax(type);
+		for (Field field : Field.values())
+			if (field != Field.TYPE) {
+				Object value = get(field);
+				copy.set(field, value instanceof String[] ? ((String[]) value).clone() : value);
+			}
+		return copy;
+	}
+
+	/**
+	 * Get the parsed patterns of this syntax, one per line of {@link Field#PATTERN}. Syntaxes with the same pattern
+	 * share the same {@link SkriptPattern}.
+	 * @return The parsed patterns, empty if it doesn't have any.
+	 */
+	public List<SkriptPattern> getPatterns() {
+		return SkriptPattern.parseAll(StringUtils.normalizePattern(get(Field.PATTERN)));
 	}
 
 	/**
@@ -274,22 +302,72 @@ public class Syntax {
 		return this;
 	}
 
+	// The fields that are compared, through get(Field), so a lazy syntax only resolves the ones that are needed: the
+	// cheap ones come first and the changers, which may need to probe the expression, are the last.
+	static final Field[] COMPARED_FIELDS = {
+			Field.NAME,
+			Field.PATTERN,
+			Field.SINCE,
+			Field.ADDON,
+			Field.DEPENDENCY,
+			Field.RETURN_TYPE,
+			Field.DESCRIPTION,
+			Field.EXAMPLES,
+			Field.USAGE, //Only Type.Type should have it
+			Field.EVENT_VALUES,
+			Field.CHANGERS};
+
+	/**
+	 * Check if a field has the same value in both syntaxes.
+	 * @param field The field.
+	 * @param other The other syntax.
+	 * @return true if the values are the same.
+	 */
+	public boolean isSame(Field field, Syntax other) {
+		switch (field) {
+			case TYPE: return get(Field.TYPE) == other.get(Field.TYPE);
+			case ID: return Objects.equals(get(Field.ID), other.get(Field.ID));
+			case PATTERN: return StringUtils.equalsPatterns(get(field), other.get(field));
+			case EVENT_VALUES:
+			case CHANGERS: return Arrays.equals((String[]) get(field), (String[]) other.get(field));
+			default:
+				if (isText(field))
+					return StringUtils.equalsText(get(field), other.get(field));
+				return StringUtils.equals(get(field), other.get(field));
+		}
+	}
+
+	// Long free text, where only the whitespace may differ between the local syntax and skUnity (line endings,
+	// indentation...), so it is ignored when comparing, see StringUtils#equalsText
+	static boolean isText(Field field) {
+		return field == Field.DESCRIPTION || field == Field.EXAMPLES || field == Field.USAGE;
+	}
+
+	/**
+	 * Get the fields that are different in the other syntax. The {@link Field#ID} is not compared.
+	 * @param other The other syntax.
+	 * @return The fields that are different, empty if the syntaxes are equal.
+	 */
+	public Set<Field> getChangedFields(Syntax other) {
+		Set<Field> result = EnumSet.noneOf(Field.class);
+		if (!isSame(Field.TYPE, other))
+			result.add(Field.TYPE);
+		for (Field field : COMPARED_FIELDS)
+			if (!isSame(field, other))
+				result.add(field);
+		return result;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == null || !(obj instanceof Syntax))
 			return false;
 		Syntax s = (Syntax) obj;
-		return type == s.type &&
-				StringUtils.equals(name, s.name) &&
-				StringUtils.equals(description, s.description) &&
-				//StringUtils.equals(examples, s.examples) &&
-				StringUtils.equalsPatterns(patterns, s.patterns) &&
-				StringUtils.equals(dependency, s.dependency) &&
-				StringUtils.equals(since, s.since) &&
-				StringUtils.equals(returnType, s.returnType) &&
-				StringUtils.equals(addon, s.addon) &&
-				StringUtils.equals(usage, s.usage) && //Only Type.Type should have it
-				Arrays.equals(changers, s.changers) &&
-				Arrays.equals(eventValues, s.eventValues);
+		if (!isSame(Field.TYPE, s))
+			return false;
+		for (Field field : COMPARED_FIELDS)
+			if (!isSame(field, s))
+				return false;
+		return true;
 	}
 }
@@ -16,6 +16,9 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -37,6 +40,12 @@ import java.util.regex.Pattern;
  * }
  * </code></pre>
  *
+ * Each field is resolved by a chain, stopping at the first source that has a value: the Skript info object
+ * ({@link #getFromEvent(Syntax.Field, SkriptEventInfo)}, {@link #getFromElement(Syntax.Field, SyntaxElementInfo)} or
+ * {@link #getFromClassInfo(Syntax.Field, ClassInfo)}), then the class annotations ({@link #getFromClass(Syntax.Field, Class)})
+ * and then the defaults ({@link #getDefault(Syntax.Field, Syntax.Type)}). The class annotations are cached, so each
+ * class and field is only resolved once per sync.
+ * <br>
  * Useful in case you have your own documentation methods, such as different annotations or external access.
  * @see Documentation#loadAutomatically(Syntax.Type...)
  */
@@ -44,6 +53,89 @@ public class SyntaxGetter {
 
 	protected JavaPlugin addon;
 
+	//The result of getFromClass for each class, by field ordinal. NONE is used for null results.
+	private final Map<Class<?>, String[][]> classCache = new ConcurrentHashMap<>();
+	private static final String[] NONE = new String[0];
+	private static final Object PROBE_LOCK = new Object();
+
+	//The extractor of each Skript info class, and the type of each info or element class. Unknown classes aren't cached.
+	private static final Map<Class<?>, Extractor> EXTRACTORS = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, Syntax.Type> TYPES = new ConcurrentHashMap<>();
+
+	// How the fields of each kind of Skript object are extracted, and the class used for the class annotations.
+	private enum Extractor {
+		EVENT {
+			String[] extract(SyntaxGetter getter, Syntax.Field field, Object info) {
+				return getter.getFromEvent(field, (SkriptEventInfo) info);
+			}
+			Class<?> getSource(Object info) {
+				return ((SkriptEventInfo<?>) info).c;
+			}
+			Syntax.Type getType(Object info) {
+				return Syntax.Type.EVENT;
+			}
+		},
+		ELEMENT {
+			String[] extract(SyntaxGetter getter, Syntax.Field field, Object info) {
+				return getter.getFromElement(field, (SyntaxElementInfo) info);
+			}
+			Class<?> getSource(Object info) {
+				return ((SyntaxElementInfo<?>) info).c;
+			}
+			Syntax.Type getType(Object info) {
+				// Conditions, effects and expressions share the same info class, so it depends on the element class
+				return typeOf(getSource(info));
+			}
+		},
+		CLASS_INFO {
+			String[] extract(SyntaxGetter getter, Syntax.Field field, Object info) {
+				return getter.getFromClassInfo(field, (ClassInfo) info);
+			}
+			Class<?> getSource(Object info) {
+				return info.getClass();
+			}
+			Syntax.Type getType(Object info) {
+				return Syntax.Type.TYPE;
+			}
+		},
+		CLASS {
+			String[] extract(SyntaxGetter getter, Syntax.Field field, Object info) {
+				return null;
+			}
+			Class<?> getSource(Object info) {
+				return (Class<?>) info;
+			}
+			Syntax.Type getType(Object info) {
+				return typeOf((Class<?>) info);
+			}
+		};
+
+		abstract String[] extract(SyntaxGetter getter, Syntax.Field field, Object info);
+		abstract Class<?> getSource(Object info);
+		abstract Syntax.Type getType(Object info);
+
+		static Extractor of(Object info) {
+			return info != null ? EXTRACTORS.computeIfAbsent(info.getClass(), Extractor::classify) : null;
+		}
+
+		// SkriptEventInfo extends SyntaxElementInfo, so it is checked first.
+		private static Extractor classify(Class<?> infoClass) {
+			if (SkriptEventInfo.class.isAssignableFrom(infoClass))
+				return EVENT;
+			if (SyntaxElementInfo.class.isAssignableFrom(infoClass))
+				return ELEMENT;
+			if (ClassInfo.class.isAssignableFrom(infoClass))
+				return CLASS_INFO;
+			if (infoClass == Class.class)
+				return CLASS;
+			return null;
+		}
+
+		private static Syntax.Type typeOf(Class<?> element) {
+			return TYPES.computeIfAbsent(element, Syntax.Type::getByClass);
+		}
+	}
+
 	public SyntaxGetter(JavaPlugin addon) {
 		this.addon = addon;
 	}
@@ -96,7 +188,7 @@ public class SyntaxGetter {
 			return null;
 		switch (field) {
 			case ADDON:
-				if (source.getPackage().getName().startsWith(addon.getClass().getPackage().getName()))
+				if (addon.getName().equals(OwnershipClassifier.get().getOwner(source)))
 					return new String[]{addon.getName()};
 				break;
 			case PATTERN:
@@ -131,7 +223,7 @@ public class SyntaxGetter {
 			case CHANGERS:
 				if (!Expression.class.isAssignableFrom(source))
 					return null;
-				if (source.isAssignableFrom(Changers.class)) {
+				if (source.isAnnotationPresent(Changers.class)) {
 					Changer.ChangeMode[] changers = source.getAnnotation(Changers.class).value();
 					String[] result = new String[changers.length];
 					int x = 0;
@@ -139,23 +231,26 @@ public class SyntaxGetter {
 						result[x++] = changer.name().toLowerCase();
 					return result;
 				}
-				ParseLogHandler logHandler = SkriptLogger.startParseLogHandler();
-				try {
-					Expression expr = (Expression) source.newInstance();
-					List<String> changers = new ArrayList<>();
-					for (Changer.ChangeMode mode : Changer.ChangeMode.values())
-						if (expr.acceptChange(mode) != null)
-							changers.add(mode.name().toLowerCase());
-					if (changers.size() > 0)
-						return changers.toArray(new String[changers.size()]);
-				} catch (Exception ignored) {
+				// Skript's log handlers aren't thread safe, so only one expression is probed at a time.
+				synchronized (PROBE_LOCK) {
+					ParseLogHandler logHandler = SkriptLogger.startParseLogHandler();
+					try {
+						Expression expr = (Expression) source.newInstance();
+						List<String> changers = new ArrayList<>();
+						for (Changer.ChangeMode mode : Changer.ChangeMode.values())
+							if (expr.acceptChange(mode) != null)
+								changers.add(mode.name().toLowerCase());
+						if (changers.size() > 0)
+							return changers.toArray(new String[changers.size()]);
+					} catch (Exception ignored) {
 
-				} finally {
-					logHandler.stop();
+					} finally {
+						logHandler.stop();
+					}
 				}
 				break;
 			case DEPENDENCY:
-				if (source.isAssignableFrom(Dependency.class))
+				if (source.isAnnotationPresent(Dependency.class))
 					return new String[]{source.getAnnotation(Dependency.class).value()};
 				break;
 		}
@@ -171,13 +266,17 @@ public class SyntaxGetter {
 	 * @return An array of {@link String} of information. It can return a null or empty array.
 	 */
 	public String[] getFromElement(Syntax.Field field, SyntaxElementInfo source) {
-		String[] result = getFromClass(field, source.c);
-		if (!StringUtils.isArrayEmpty(result))
-			return result;
+		String[] result = null;
 		switch (field) {
-			case PATTERN: result = source.patterns; break;
+			case PATTERN:
+				// The annotation has priority, since it is used to make the patterns friendly
+				result = fromClass(field, source.c);
+				if (StringUtils.isArrayEmpty(result))
+					result = source.patterns;
+				break;
 			case RETURN_TYPE:
-				if (source instanceof ExpressionInfo) {
+				result = fromClass(field, source.c);
+				if (StringUtils.isArrayEmpty(result) && source instanceof ExpressionInfo) {
 					Class<?> returnType = ((ExpressionInfo) source).returnType;
 					ClassInfo info = Classes.getExactClassInfo(returnType);
 					if (info != null)
@@ -206,13 +305,11 @@ public class SyntaxGetter {
 			case CHANGERS: return null; //For expressions only
 			case SINCE: result = new String[]{source.getSince()}; break;
 			case RETURN_TYPE: return null; //For expressions only
-			case EVENT_VALUES: break; //TODO
+			case EVENT_VALUES: result = EventValueIndex.get().getValues(source.events); break;
 			case ADDON: break; //No need to catch it here
 			case ID: return null; //Not used here
 			case DEPENDENCY: break; //No methods available in Skript object for it, so lets try the class annotation
 		}
-		if (result == null || result.length == 0 || StringUtils.isArrayEmpty(result))
-			result = getFromClass(field, source.c);
 		return result;
 	}
 
@@ -244,11 +341,30 @@ public class SyntaxGetter {
 			case ID: return null; //Not used here
 			case DEPENDENCY: break; //No methods available in Skript object for it, so lets try the class annotation
 		}
-		if (result == null || result.length == 0 || StringUtils.isArrayEmpty(result))
-			result = getFromClassInfo(field, source);
 		return result;
 	}
 
+	/**
+	 * Get the default value of a field, used when neither the Skript info object nor the class has it.
+	 * @param field The Field of what it wants
+	 * @param type The type of the syntax
+	 * @return An array of {@link String} of information. It can return a null or empty array.
+	 */
+	public String[] getDefault(Syntax.Field field, Syntax.Type type) {
+		switch (field) {
+			case TYPE: return new String[]{type.toString()};
+			case SINCE: return new String[]{"1.0"};
+		}
+		return null;
+	}
+
+	/**
+	 * Clear the cached values of {@link #getFromClass(Syntax.Field, Class)}. It is called at the start of every sync.
+	 */
+	public void clearCache() {
+		classCache.clear();
+	}
+
 	/**
 	 * Used internally to get a Syntax object from any Skript documentation objects.
 	 * @param syntaxObject It receives {@link SkriptEvent}, {@link SyntaxElementInfo} (conditions, effects and expressions)
@@ -256,25 +372,91 @@ public class SyntaxGetter {
 	 * @return
 	 */
 	protected Syntax getSyntax(Object syntaxObject) {
-		Syntax.Type type = Syntax.Type.getByClass(syntaxObject.getClass());
+		Syntax.Type type = getType(syntaxObject);
 		if (type == null || !check(syntaxObject))
 			return null;
 		Syntax s = new Syntax(type);
-		for (Syntax.Field field : type.getFields()) {
-			Object result;
-			if (syntaxObject instanceof SkriptEventInfo)
-				result = getFromEvent(field, (SkriptEventInfo)syntaxObject);
-			else if (syntaxObject instanceof SyntaxElementInfo)
-				result = getFromElement(field, (SyntaxElementInfo) syntaxObject);
-			else if (syntaxObject instanceof ClassInfo)
-				result = getFromClassInfo(field, (ClassInfo)syntaxObject);
-			else if (syntaxObject instanceof Class)
-				result = getFromClass(field, (Class) syntaxObject);
-			else
-				throw new IllegalArgumentException("The parameter is not a SkriptEventoInfo, ClassInfo, SyntaxElementInfo " +
-						"nor a class");
-			s.set(field, result);
-		}
+		for (Syntax.Field field : type.getFields())
+			if (field != Syntax.Field.ID)
+				s.set(field, resolveValue(field, type, syntaxObject));
 		return s;
 	}
+
+	/**
+	 * Used internally to get a Syntax object whose fields are only resolved when they are used for the first time.
+	 * @param syntaxObject The same objects of {@link #getSyntax(Object)}
+	 * @return The lazy syntax, or null if it shouldn't be documented.
+	 */
+	protected Syntax getLazySyntax(Object syntaxObject) {
+		Syntax.Type type = getType(syntaxObject);
+		if (type == null || !check(syntaxObject))
+			return null;
+		return new LazySyntax(type, this, syntaxObject);
+	}
+
+	/**
+	 * Get the type of a Skript object. Unlike {@link Syntax.Type#getByClass(Class)}, it accepts the info objects of
+	 * Skript's registries. The result is cached by class.
+	 * @param syntaxObject A {@link SkriptEventInfo}, {@link SyntaxElementInfo}, {@link ClassInfo} or the class of an
+	 *                     element.
+	 * @return The type, or null if it isn't a syntax.
+	 */
+	public static Syntax.Type getType(Object syntaxObject) {
+		Extractor extractor = Extractor.of(syntaxObject);
+		return extractor != null ? extractor.getType(syntaxObject) : null;
+	}
+
+	// The resolved field, as the value type that Syntax expects.
+	Object resolveValue(Syntax.Field field, Syntax.Type type, Object syntaxObject) {
+		if (field == Syntax.Field.ID)
+			return null;
+		return toValue(field, resolve(field, type, syntaxObject));
+	}
+
+	/**
+	 * Resolve a field through the chain: Skript info object, class annotations and defaults.
+	 */
+	protected String[] resolve(Syntax.Field field, Syntax.Type type, Object syntaxObject) {
+		Extractor extractor = Extractor.of(syntaxObject);
+		if (extractor == null)
+			throw new IllegalArgumentException("The parameter is not a SkriptEventoInfo, ClassInfo, SyntaxElementInfo " +
+					"nor a class");
+		String[] result = extractor.extract(this, field, syntaxObject);
+		Class<?> source = extractor.getSource(syntaxObject);
+		if (StringUtils.isArrayEmpty(result))
+			result = fromClass(field, source);
+		if (StringUtils.isArrayEmpty(result))
+			result = getDefault(field, type);
+		return result;
+	}
+
+	// getFromClass, but only once per class and field.
+	private String[] fromClass(Syntax.Field field, Class<?> source) {
+		if (source == null)
+			return null;
+		String[][] fields = classCache.computeIfAbsent(source, k -> new String[Syntax.Field.values().length][]);
+		String[] result = fields[field.ordinal()];
+		if (result == null) {
+			result = getFromClass(field, source);
+			fields[field.ordinal()] = result = result != null ? result : NONE;
+		}
+		return result != NONE ? result : null;
+	}
+
+	// Convert the resolved strings to the value type that Syntax expects for the field.
+	private static Object toValue(Syntax.Field field, String[] values) {
+		if (StringUtils.isArrayEmpty(values))
+			return null;
+		switch (field) {
+			case TYPE: return Syntax.Type.getByName(values[0]);
+			case CHANGERS:
+			case EVENT_VALUES: return values;
+			default:
+				StringJoiner sj = new StringJoiner("\n");
+				for (String value : values)
+					if (value != null)
+						sj.add(value);
+				return sj.toString();
+		}
+	}
 }
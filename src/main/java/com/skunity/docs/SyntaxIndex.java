@@ -0,0 +1,403 @@
+package com.skunity.docs;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A searchable index of {@link Syntax} objects, used to answer queries such as "which syntaxes contain
+ * <code>%player%</code> and <code>teleport</code>" without scanning every syntax.<br>
+ * It keeps an inverted index of the words in the name and description of each syntax, and a trie of the literal tokens
+ * of its patterns (words and types, like <code>teleport</code> or <code>%player%</code>). Syntaxes can be added at any
+ * time, from any thread, and the index is updated incrementally. Adding a syntax with the same type, name and pattern
+ * of an indexed one replaces it.<br>
+ * A lazy syntax (see {@link Documentation#lazySyntax(boolean)}) is indexed by its type, name and pattern. Its
+ * description is only resolved by the first search of words, outside the lock, so adding it stays cheap.
+ * <pre><code>
+ * List&lt;Syntax&gt; result = documentation.getIndex().search("%player% teleport");
+ * </code></pre>
+ * @see Documentation#getIndex()
+ */
+public class SyntaxIndex {
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	//The indexed syntaxes, their position is their id. Replaced ones are null until the index is compacted.
+	private final List<Syntax> syntaxes = new ArrayList<>();
+
+	//The ids that weren't replaced, and how many were.
+	private final BitSet live = new BitSet();
+	private int replaced = 0;
+
+	//The id of each indexed syntax, by its key (type, name and pattern).
+	private final Map<String, Integer> ids = new HashMap<>();
+
+	//Words of name and description -> ids
+	private final Map<String, BitSet> words = new HashMap<>();
+
+	//The ids of the lazy syntaxes whose description wasn't resolved yet, so its words aren't indexed.
+	private final BitSet pending = new BitSet();
+
+	//Literal tokens of patterns
+	private Node patterns = new Node();
+
+	/**
+	 * Add a syntax to the index, replacing an indexed one that has the same type, name and pattern.
+	 * @param syntax The syntax.
+	 */
+	public void add(Syntax syntax) {
+		if (syntax == null)
+			return;
+		lock.writeLock().lock();
+		try {
+			index(syntax);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Add all syntaxes to the index.
+	 * @param syntaxes The syntaxes.
+	 * @see #add(Syntax)
+	 */
+	public void addAll(Collection<Syntax> syntaxes) {
+		lock.writeLock().lock();
+		try {
+			for (Syntax syntax : syntaxes)
+				if (syntax != null)
+					index(syntax);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The amount of indexed syntaxes.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return live.cardinality();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The amount of ids in use, which includes the replaced syntaxes until the index is compacted.
+	 */
+	int getSlots() {
+		lock.readLock().lock();
+		try {
+			return syntaxes.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Search for syntaxes that match all tokens of a query. A token like <code>%player%</code> must be in a pattern,
+	 * any other token must be a word in the name or description, or a literal word of a pattern.
+	 * @param query The query, with tokens separated by spaces.
+	 * @return The matching syntaxes, in the order they were added.
+	 */
+	public List<Syntax> search(String query) {
+		List<String> tokens = new ArrayList<>();
+		if (query != null)
+			for (String token : query.trim().toLowerCase().split("\\s+"))
+				if (!token.isEmpty())
+					tokens.add(token);
+		for (String token : tokens)
+			if (!isType(token)) {
+				indexDescriptions();
+				break;
+			}
+		lock.readLock().lock();
+		try {
+			BitSet result = (BitSet) live.clone();
+			for (String token : tokens) {
+				BitSet match = patterns.get(token);
+				if (!isType(token)) {
+					BitSet text = words.get(token);
+					if (text != null)
+						match = match == null ? text : or(match, text);
+				}
+				if (match == null)
+					return Collections.emptyList();
+				result.and(match);
+			}
+			return collect(result);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Search for syntaxes whose patterns contain all given tokens, such as <code>teleport</code> or <code>%player%</code>.
+	 * @param tokens The literal tokens.
+	 * @return The matching syntaxes, in the order they were added.
+	 */
+	public List<Syntax> findByPattern(String... tokens) {
+		lock.readLock().lock();
+		try {
+			BitSet result = (BitSet) live.clone();
+			for (String token : tokens) {
+				BitSet match = patterns.get(token.toLowerCase());
+				if (match == null)
+					return Collections.emptyList();
+				result.and(match);
+			}
+			return collect(result);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Search for syntaxes that have a pattern token starting with the given prefix. Useful to suggest syntaxes while
+	 * the user is still typing.
+	 * @param prefix The prefix, such as <code>tele</code> or <code>%play</code>.
+	 * @return The matching syntaxes, in the order they were added.
+	 */
+	public List<Syntax> findByPatternPrefix(String prefix) {
+		lock.readLock().lock();
+		try {
+			Node node = patterns.find(prefix.toLowerCase());
+			if (node == null)
+				return Collections.emptyList();
+			BitSet result = (BitSet) node.subtree.clone();
+			result.and(live);
+			return collect(result);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Search for syntaxes that have all given words in its name or description.
+	 * @param text The words.
+	 * @return The matching syntaxes, in the order they were added.
+	 */
+	public List<Syntax> findByText(String... text) {
+		indexDescriptions();
+		lock.readLock().lock();
+		try {
+			BitSet result = (BitSet) live.clone();
+			for (String word : text) {
+				BitSet match = words.get(word.toLowerCase());
+				if (match == null)
+					return Collections.emptyList();
+				result.and(match);
+			}
+			return collect(result);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// Must be called with the write lock.
+	private void index(Syntax syntax) {
+		int id = syntaxes.size();
+		Integer old = ids.put(key(syntax), id);
+		if (old != null) {
+			live.clear(old);
+			pending.clear(old);
+			syntaxes.set(old, null);
+			replaced++;
+		}
+		syntaxes.add(syntax);
+		live.set(id);
+		addTokens(syntax, id);
+		// Documentation adds every syntax again in each sync, so the replaced ones are dropped once they are the most
+		if (replaced > 64 && replaced > syntaxes.size() / 2)
+			compact();
+	}
+
+	// Gives new ids to the live syntaxes, in the same order, and drops everything of the replaced ones.
+	private void compact() {
+		List<Syntax> current = collect(live);
+		syntaxes.clear();
+		live.clear();
+		ids.clear();
+		words.clear();
+		pending.clear();
+		patterns = new Node();
+		replaced = 0;
+		for (Syntax syntax : current) {
+			int id = syntaxes.size();
+			ids.put(key(syntax), id);
+			syntaxes.add(syntax);
+			live.set(id);
+			addTokens(syntax, id);
+		}
+	}
+
+	private void addTokens(Syntax syntax, int id) {
+		addWords(words(syntax.get(Syntax.Field.NAME)), id);
+		if (syntax instanceof LazySyntax && !((LazySyntax) syntax).isResolved(Syntax.Field.DESCRIPTION))
+			pending.set(id);
+		else
+			addWords(words(syntax.get(Syntax.Field.DESCRIPTION)), id);
+		for (String token : patternTokens(syntax.get(Syntax.Field.PATTERN)))
+			patterns.put(token, id);
+	}
+
+	private void addWords(Set<String> text, int id) {
+		for (String word : text)
+			words.computeIfAbsent(word, k -> new BitSet()).set(id);
+	}
+
+	// Resolves the descriptions of the pending lazy syntaxes without holding the lock, so a search in the main thread
+	// never waits for another thread resolving them, then indexes their words.
+	private void indexDescriptions() {
+		List<Syntax> lazy;
+		lock.readLock().lock();
+		try {
+			if (pending.isEmpty())
+				return;
+			lazy = collect(pending);
+		} finally {
+			lock.readLock().unlock();
+		}
+		Map<Syntax, Set<String>> resolved = new IdentityHashMap<>();
+		for (Syntax syntax : lazy)
+			resolved.put(syntax, words(syntax.get(Syntax.Field.DESCRIPTION)));
+		lock.writeLock().lock();
+		try {
+			// The ids may have changed while it was resolving, and the ones that were replaced are dropped
+			for (int id = pending.nextSetBit(0); id >= 0; id = pending.nextSetBit(id + 1)) {
+				Set<String> text = resolved.get(syntaxes.get(id));
+				if (text != null) {
+					addWords(text, id);
+					pending.clear(id);
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private List<Syntax> collect(BitSet ids) {
+		List<Syntax> result = new ArrayList<>(ids.cardinality());
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1))
+			result.add(syntaxes.get(id));
+		return result;
+	}
+
+	private static BitSet or(BitSet b1, BitSet b2) {
+		BitSet result = (BitSet) b1.clone();
+		result.or(b2);
+		return result;
+	}
+
+	private static boolean isType(String token) {
+		return token.length() > 1 && token.charAt(0) == '%' && token.charAt(token.length() - 1) == '%';
+	}
+
+	static String key(Syntax syntax) {
+		return syntax.get(Syntax.Field.TYPE) + "\u0000" + syntax.get(Syntax.Field.NAME) + "\u0000"
+				+ syntax.get(Syntax.Field.PATTERN);
+	}
+
+	/**
+	 * Split a text in lower case words, ignoring any char that is not a letter or digit.
+	 */
+	static Set<String> words(String text) {
+		Set<String> result = new HashSet<>();
+		if (text == null)
+			return result;
+		StringBuilder sb = new StringBuilder();
+		for (int x = 0; x <= text.length(); x++) {
+			char c = x < text.length() ? text.charAt(x) : ' ';
+			if (Character.isLetterOrDigit(c))
+				sb.append(Character.toLowerCase(c));
+			else if (sb.length() > 0) {
+				result.add(sb.toString());
+				sb.setLength(0);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get the literal tokens of Skript patterns: the words and the types (<code>%player%</code>), in lower case.
+	 * Group marks (<code>1¦</code>), regexes and the type flags (<code>%-player%</code>) are removed and escaped chars
+	 * are kept as literal.
+	 */
+	static Set<String> patternTokens(String patterns) {
+		Set<String> result = new HashSet<>();
+		for (SkriptPattern pattern : SkriptPattern.parseAll(patterns))
+			addTokens(pattern.getRoot(), result);
+		return result;
+	}
+
+	private static void addTokens(SkriptPattern.Node node, Set<String> result) {
+		switch (node.getKind()) {
+			case LITERAL:
+				StringBuilder sb = new StringBuilder();
+				for (char c : node.getText().toCharArray()) {
+					if (Character.isWhitespace(c))
+						flush(sb, result);
+					else
+						sb.append(Character.toLowerCase(c));
+				}
+				flush(sb, result);
+				break;
+			case TYPE:
+				String type = node.getText().toLowerCase();
+				while (!type.isEmpty() && (type.charAt(0) == '-' || type.charAt(0) == '~' || type.charAt(0) == '*'))
+					type = type.substring(1);
+				int time = type.indexOf('@');
+				if (time >= 0)
+					type = type.substring(0, time);
+				result.add("%" + type + "%");
+				break;
+			case REGEX:
+				break;
+			default:
+				for (SkriptPattern.Node child : node.getChildren())
+					addTokens(child, result);
+		}
+	}
+
+	private static void flush(StringBuilder sb, Set<String> result) {
+		if (sb.length() > 0) {
+			result.add(sb.toString());
+			sb.setLength(0);
+		}
+	}
+
+	// A node of the pattern tokens trie
+	private static class Node {
+		private final Map<Character, Node> children = new HashMap<>();
+		//The ids of the syntaxes that have the token ending at this node
+		private BitSet ids;
+		//The ids of the syntaxes that have a token starting with this node's prefix
+		private final BitSet subtree = new BitSet();
+
+		void put(String token, int id) {
+			Node node = this;
+			node.subtree.set(id);
+			for (int x = 0; x < token.length(); x++) {
+				node = node.children.computeIfAbsent(token.charAt(x), k -> new Node());
+				node.subtree.set(id);
+			}
+			if (node.ids == null)
+				node.ids = new BitSet();
+			node.ids.set(id);
+		}
+
+		Node find(String prefix) {
+			Node node = this;
+			for (int x = 0; x < prefix.length() && node != null; x++)
+				node = node.children.get(prefix.charAt(x));
+			return node;
+		}
+
+		BitSet get(String token) {
+			Node node = find(token);
+			return node != null ? node.ids : null;
+		}
+	}
+}
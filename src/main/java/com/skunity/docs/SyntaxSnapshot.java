@@ -0,0 +1,489 @@
+package com.skunity.docs;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A read-only collection of syntaxes in a compact binary file, such as a dump of all syntaxes in the server or the
+ * syntaxes downloaded from skUnity. The file is mapped in memory, so opening it only checks its offsets, and a syntax
+ * is only decoded when one of its values is requested. Each record also has a precomputed fingerprint of the compared
+ * fields, so checking if a syntax changed ({@link #isUpToDate(Syntax)}) doesn't decode the record at all.
+ * <pre><code>
+ * SyntaxSnapshot.write(file, syntaxes);
+ * SyntaxSnapshot snapshot = SyntaxSnapshot.open(file);
+ * if (!snapshot.isUpToDate(syntax))
+ *     ...
+ * </code></pre>
+ * Format (big endian):
+ * <ul>
+ *     <li>Header: magic, version, amount of records, amount of strings, fingerprint schema and the offsets of the
+ *     index, of the string offsets and of the string data.</li>
+ *     <li>Records, {@value #RECORD_SIZE} bytes each: fingerprint, key hash, type, id and the index of the string of
+ *     each stored field (-1 if null).</li>
+ *     <li>Index: the records sorted by key hash (type and name), for binary search.</li>
+ *     <li>String table: the offset of each string, then all strings in UTF-8. Equal strings are stored once.</li>
+ * </ul>
+ */
+public final class SyntaxSnapshot {
+
+	private static final int MAGIC = 0x534B534E; // SKSN
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	// The fields stored as strings, in the order of the record. Type and id are stored as integers.
+	private static final Syntax.Field[] STORED_FIELDS = {
+			Syntax.Field.NAME,
+			Syntax.Field.DESCRIPTION,
+			Syntax.Field.EXAMPLES,
+			Syntax.Field.PATTERN,
+			Syntax.Field.SINCE,
+			Syntax.Field.DEPENDENCY,
+			Syntax.Field.RETURN_TYPE,
+			Syntax.Field.CHANGERS,
+			Syntax.Field.USAGE,
+			Syntax.Field.EVENT_VALUES,
+			Syntax.Field.ADDON};
+	private static final int RECORD_SIZE = 8 + 8 + 4 + 4 + 4 * STORED_FIELDS.length + 4; // Padded to 8 bytes
+	// Elements of array fields are stored in a single string, each one ends with this char.
+	private static final char ARRAY_SEPARATOR = '\u0000';
+	private static final int NO_ID = Integer.MIN_VALUE;
+	// Changed when the values in the fingerprint are hashed differently
+	private static final int FINGERPRINT_VERSION = 3;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L, FNV_PRIME = 0x100000001b3L;
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private final int records, strings, indexOffset, stringsOffset, dataOffset;
+	// The fingerprints are ignored if they were created with other compared fields
+	private final boolean fingerprints;
+
+	private SyntaxSnapshot(File file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+			throw new IOException("The file " + file + " is not a syntax snapshot");
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("The snapshot " + file + " has an unsupported version: " + buffer.getInt(4));
+		records = buffer.getInt(8);
+		strings = buffer.getInt(12);
+		fingerprints = buffer.getInt(16) == fingerprintSchema();
+		indexOffset = buffer.getInt(20);
+		stringsOffset = buffer.getInt(24);
+		dataOffset = buffer.getInt(28);
+		// In longs, so huge counts of a damaged header can't overflow to valid offsets
+		long end = buffer.capacity();
+		if (records < 0 || strings < 0 || indexOffset != HEADER_SIZE + (long) records * RECORD_SIZE
+				|| stringsOffset != indexOffset + records * 4L || dataOffset != stringsOffset + (strings + 1L) * 4
+				|| dataOffset > end)
+			throw corrupted("the header doesn't match the file size");
+		validate(end);
+	}
+
+	// Checks everything that is read later, so a damaged file fails to open instead of failing on a read.
+	private void validate(long end) throws IOException {
+		int previous = 0;
+		for (int i = 0; i <= strings; i++) {
+			int start = buffer.getInt(stringsOffset + i * 4);
+			if (start < previous || dataOffset + (long) start > end)
+				throw corrupted("the string " + i + " is out of bounds");
+			previous = start;
+		}
+		int types = Syntax.Type.values().length;
+		for (int record = 0; record < records; record++) {
+			int offset = HEADER_SIZE + record * RECORD_SIZE;
+			int type = buffer.getInt(offset + 16);
+			if (type < 0 || type >= types)
+				throw corrupted("the record " + record + " has an unknown type");
+			for (int f = 0; f < STORED_FIELDS.length; f++) {
+				int string = buffer.getInt(offset + 24 + f * 4);
+				if (string < -1 || string >= strings)
+					throw corrupted("the record " + record + " has an unknown string");
+			}
+			int position = buffer.getInt(indexOffset + record * 4);
+			if (position < 0 || position >= records)
+				throw corrupted("the index has an unknown record");
+		}
+	}
+
+	private IOException corrupted(String reason) {
+		return new IOException("The snapshot " + file + " is corrupted: " + reason);
+	}
+
+	/**
+	 * Map a snapshot file in memory. Its header, offsets and references are checked, but no string is decoded.
+	 * @param file The file, created with {@link #write(File, Collection)}.
+	 * @return The snapshot.
+	 * @throws IOException if the file can't be read or isn't a valid snapshot, such as a truncated or damaged one.
+	 */
+	public static SyntaxSnapshot open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath())) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("The file " + file + " is too big to be a syntax snapshot");
+			// The mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new SyntaxSnapshot(file, buffer);
+		}
+	}
+
+	/**
+	 * Write syntaxes to a snapshot file. The file is replaced only after it is completely written.
+	 * @param file The file.
+	 * @param syntaxes The syntaxes.
+	 * @throws IOException if the file can't be written.
+	 */
+	public static void write(File file, Collection<? extends Syntax> syntaxes) throws IOException {
+		List<Syntax> list = new ArrayList<>(syntaxes);
+		Map<String, Integer> table = new LinkedHashMap<>();
+		int[][] slots = new int[list.size()][STORED_FIELDS.length];
+		long[] keys = new long[list.size()];
+		for (int i = 0; i < list.size(); i++) {
+			Syntax syntax = list.get(i);
+			for (int f = 0; f < STORED_FIELDS.length; f++) {
+				String value = encode(syntax.get(STORED_FIELDS[f]));
+				slots[i][f] = value != null ? table.computeIfAbsent(value, k -> table.size()) : -1;
+			}
+			keys[i] = key(syntax.get(Syntax.Field.TYPE), syntax.get(Syntax.Field.NAME));
+		}
+		Integer[] index = new Integer[list.size()];
+		for (int i = 0; i < index.length; i++)
+			index[i] = i;
+		Arrays.sort(index, (i1, i2) -> Long.compare(keys[i1], keys[i2]));
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs())
+			throw new IOException("Couldn't create the folder " + parent);
+		File temp = new File(parent, file.getName() + ".tmp");
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			int indexOffset = HEADER_SIZE + list.size() * RECORD_SIZE;
+			int stringsOffset = indexOffset + list.size() * 4;
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(list.size());
+			output.writeInt(table.size());
+			output.writeInt(fingerprintSchema());
+			output.writeInt(indexOffset);
+			output.writeInt(stringsOffset);
+			output.writeInt(stringsOffset + (table.size() + 1) * 4);
+			for (int i = 0; i < list.size(); i++) {
+				Syntax syntax = list.get(i);
+				Integer id = syntax.get(Syntax.Field.ID);
+				output.writeLong(fingerprint(syntax));
+				output.writeLong(keys[i]);
+				output.writeInt(((Syntax.Type) syntax.get(Syntax.Field.TYPE)).ordinal());
+				output.writeInt(id != null ? id : NO_ID);
+				for (int slot : slots[i])
+					output.writeInt(slot);
+				output.writeInt(0);
+			}
+			for (int i : index)
+				output.writeInt(i);
+			List<byte[]> bytes = new ArrayList<>(table.size());
+			int offset = 0;
+			for (String string : table.keySet()) {
+				byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+				bytes.add(encoded);
+				output.writeInt(offset);
+				offset += encoded.length;
+			}
+			output.writeInt(offset);
+			for (byte[] encoded : bytes)
+				output.write(encoded);
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Convert a JSON file, an array of syntaxes in skUnity format, to a snapshot file.
+	 * @param json The JSON file.
+	 * @param file The snapshot file.
+	 * @return The snapshot.
+	 * @throws IOException if a file can't be read or written.
+	 */
+	public static SyntaxSnapshot fromJson(File json, File file) throws IOException {
+		JsonSyntaxConverter converter = new JsonSyntaxConverter(null);
+		List<Syntax> syntaxes = new ArrayList<>();
+		try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(json), StandardCharsets.UTF_8))) {
+			reader.beginArray();
+			while (reader.hasNext()) {
+				if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+					reader.skipValue();
+					continue;
+				}
+				Syntax syntax = converter.read(reader);
+				if (syntax != null)
+					syntaxes.add(syntax);
+			}
+			reader.endArray();
+		} catch (IllegalStateException e) {
+			throw new IOException("The file " + json + " is not a JSON array of syntaxes", e);
+		}
+		write(file, syntaxes);
+		return open(file);
+	}
+
+	static SyntaxSnapshot fromJson(JsonArray array, File file, JsonSyntaxConverter converter) throws IOException {
+		List<Syntax> syntaxes = new ArrayList<>(array.size());
+		for (JsonElement element : array) {
+			Syntax syntax = element.isJsonObject() ? converter.fromJson(element.getAsJsonObject()) : null;
+			if (syntax != null)
+				syntaxes.add(syntax);
+		}
+		write(file, syntaxes);
+		return open(file);
+	}
+
+	/**
+	 * Write all syntaxes to a JSON file, in skUnity format. Syntaxes are decoded and written one by one.
+	 * @param json The JSON file.
+	 * @throws IOException if the file can't be written.
+	 */
+	public void toJson(File json) throws IOException {
+		JsonSyntaxConverter converter = new JsonSyntaxConverter(null);
+		try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(json), StandardCharsets.UTF_8)))) {
+			writer.setSerializeNulls(false);
+			writer.beginArray();
+			for (int i = 0; i < records; i++)
+				converter.write(writer, getSyntax(i));
+			writer.endArray();
+		}
+	}
+
+	JsonArray toJson(JsonSyntaxConverter converter) {
+		JsonArray array = new JsonArray();
+		for (int i = 0; i < records; i++)
+			array.add(converter.fromSyntax(getSyntax(i)));
+		return array;
+	}
+
+	/**
+	 * @return The amount of syntaxes.
+	 */
+	public int size() {
+		return records;
+	}
+
+	/**
+	 * @param record The index of the syntax, from 0 to {@link #size()}.
+	 * @return Its type.
+	 */
+	public Syntax.Type getType(int record) {
+		return Syntax.Type.values()[buffer.getInt(offset(record) + 16)];
+	}
+
+	/**
+	 * @param record The index of the syntax, from 0 to {@link #size()}.
+	 * @return Its id in skUnity, or null if it doesn't have one.
+	 */
+	public Integer getId(int record) {
+		int id = buffer.getInt(offset(record) + 20);
+		return id != NO_ID ? id : null;
+	}
+
+	/**
+	 * @param record The index of the syntax, from 0 to {@link #size()}.
+	 * @return Its fingerprint, the same of {@link #fingerprint(Syntax)}.
+	 */
+	public long getFingerprint(int record) {
+		return fingerprints ? buffer.getLong(offset(record)) : fingerprint(getSyntax(record));
+	}
+
+	/**
+	 * Decode a single value of a syntax.
+	 * @param record The index of the syntax, from 0 to {@link #size()}.
+	 * @param field The field.
+	 * @param <T> The same of {@link Syntax#get(Syntax.Field)}.
+	 * @return The value.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(int record, Syntax.Field field) {
+		switch (field) {
+			case TYPE: return (T) getType(record);
+			case ID: return (T) getId(record);
+		}
+		for (int f = 0; f < STORED_FIELDS.length; f++)
+			if (STORED_FIELDS[f] == field) {
+				String value = getString(buffer.getInt(offset(record) + 24 + f * 4));
+				return (T) (field == Syntax.Field.CHANGERS || field == Syntax.Field.EVENT_VALUES ? decodeArray(value) : value);
+			}
+		return null;
+	}
+
+	/**
+	 * Decode a syntax.
+	 * @param record The index of the syntax, from 0 to {@link #size()}.
+	 * @return A new syntax with all values of the record.
+	 */
+	public Syntax getSyntax(int record) {
+		Syntax syntax = new Syntax(getType(record));
+		syntax.set(Syntax.Field.ID, getId(record));
+		for (Syntax.Field field : STORED_FIELDS)
+			syntax.set(field, get(record, field));
+		return syntax;
+	}
+
+	/**
+	 * Find a syntax by type and name.
+	 * @param type The type.
+	 * @param name The name.
+	 * @return The index of the first syntax found, or -1 if there is none.
+	 */
+	public int indexOf(Syntax.Type type, String name) {
+		long key = key(type, name);
+		int low = 0, high = records - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (buffer.getLong(offset(indexAt(middle)) + 8) < key)
+				low = middle + 1;
+			else
+				high = middle - 1;
+		}
+		for (int i = low; i < records; i++) {
+			int record = indexAt(i);
+			if (buffer.getLong(offset(record) + 8) != key)
+				break;
+			if (getType(record) == type && StringUtils.equals(get(record, Syntax.Field.NAME), name))
+				return record;
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if a syntax is in the snapshot with the same values. Only the name of the matching record is decoded.
+	 * @param syntax The syntax.
+	 * @return true if a syntax with the same type and name has the same fingerprint.
+	 */
+	public boolean isUpToDate(Syntax syntax) {
+		int record = indexOf(syntax.get(Syntax.Field.TYPE), syntax.get(Syntax.Field.NAME));
+		return record >= 0 && getFingerprint(record) == fingerprint(syntax);
+	}
+
+	/**
+	 * Get a hash of the values that are compared between syntaxes (see {@link Syntax#equals(Object)}). Equal syntaxes
+	 * always have the same fingerprint.
+	 * @param syntax The syntax.
+	 * @return The fingerprint.
+	 */
+	public static long fingerprint(Syntax syntax) {
+		long hash = hash(FNV_OFFSET, ((Syntax.Type) syntax.get(Syntax.Field.TYPE)).name());
+		for (Syntax.Field field : Syntax.COMPARED_FIELDS) {
+			Object value = syntax.get(field);
+			if (value instanceof String[]) {
+				hash = hash(hash, "[");
+				for (String element : (String[]) value)
+					hash = hash(hash(hash, element != null ? element : "\u0001"), "\u0000");
+			} else {
+				String string = (String) value;
+				if (field == Syntax.Field.PATTERN) // Equal patterns have the same structure, not the same string
+					for (SkriptPattern pattern : SkriptPattern.parseAll(StringUtils.normalizePattern(string)))
+						hash = hash(hash(hash, pattern.toStructuralString()), "\n");
+				else if (Syntax.isText(field))
+					hash = hashText(hash, string);
+				else
+					hash = hash(hash, string);
+			}
+			// Separate the fields, so values can't be moved to the next one
+			hash = hash(hash, "\u0002");
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return "SyntaxSnapshot{file=" + file + ", syntaxes=" + records + ", strings=" + strings + "}";
+	}
+
+	private int offset(int record) {
+		if (record < 0 || record >= records)
+			throw new IndexOutOfBoundsException("Record " + record + " of " + records);
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+
+	private int indexAt(int position) {
+		return buffer.getInt(indexOffset + position * 4);
+	}
+
+	private String getString(int index) {
+		if (index < 0)
+			return null;
+		int start = buffer.getInt(stringsOffset + index * 4);
+		int end = buffer.getInt(stringsOffset + index * 4 + 4);
+		byte[] bytes = new byte[end - start];
+		// Absolute reads on a duplicate, so the snapshot can be read by many threads
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(dataOffset + start);
+		duplicate.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static String encode(Object value) {
+		if (!(value instanceof String[]))
+			return (String) value;
+		StringBuilder builder = new StringBuilder();
+		for (String element : (String[]) value)
+			builder.append(element != null ? element : "").append(ARRAY_SEPARATOR);
+		return builder.toString();
+	}
+
+	private static String[] decodeArray(String value) {
+		if (value == null)
+			return null;
+		List<String> result = new ArrayList<>();
+		int start = 0, end;
+		while ((end = value.indexOf(ARRAY_SEPARATOR, start)) >= 0) {
+			result.add(value.substring(start, end));
+			start = end + 1;
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static long key(Syntax.Type type, String name) {
+		return hash(hash(FNV_OFFSET, type.name()), name);
+	}
+
+	// The compared fields change which values are in the fingerprint
+	private static int fingerprintSchema() {
+		return (int) key(Syntax.Type.TYPE, FINGERPRINT_VERSION + Arrays.toString(Syntax.COMPARED_FIELDS));
+	}
+
+	// FNV-1a of the chars, null is the same as an empty string like in StringUtils#equals
+	private static long hash(long hash, String value) {
+		if (value != null)
+			for (int i = 0; i < value.length(); i++) {
+				hash ^= value.charAt(i);
+				hash *= FNV_PRIME;
+			}
+		return hash;
+	}
+
+	// FNV-1a of the text as StringUtils#equalsText compares it: a run of whitespace is a single space, except at the ends
+	private static long hashText(long hash, String value) {
+		if (value == null)
+			return hash;
+		boolean space = false;
+		for (int i = StringUtils.skipWhitespace(value, 0); i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = true;
+				continue;
+			}
+			if (space) {
+				hash ^= ' ';
+				hash *= FNV_PRIME;
+				space = false;
+			}
+			hash ^= c;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,131 @@
+package com.skunity.docs;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the sync thread from competing with the server for CPU. The sync thread calls {@link #checkpoint()} between
+ * small units of work (one syntax) and, once it used its budget of CPU time, it waits for the next server tick. It is
+ * never called while holding a lock, since the main thread could be waiting for it while the sync thread waits for a
+ * tick. While the server is lagging (its ticks take longer than {@value #LAG_PERCENT}% of a normal tick), it doesn't
+ * work at all, and it resumes once the ticks are back to normal.
+ * <br>
+ * The ticks are measured by a task that runs every tick in the main thread. The main thread itself is never throttled.
+ * <br>
+ * The sync thread must be a platform thread (see {@link SyncThreads#newPlatformThread(String)}): the JVM can't measure
+ * the CPU time of a virtual thread, so the budget would become wall time, counting the time spent waiting for
+ * responses too, and waiting in {@link #checkpoint()} would pin the carrier of a virtual thread.
+ * @see Documentation#throttle(long)
+ */
+class TickThrottle {
+
+	private static final long TICK = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final int LAG_PERCENT = 110;
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final long budget;
+	private final Object lock = new Object();
+	private BukkitTask task;
+	private volatile boolean stopped = false;
+
+	//When the last tick started and the average tick duration (exponentially smoothed), in nanoseconds.
+	private volatile long lastTick = 0, averageTick = TICK;
+
+	//The CPU time of each worker thread when its current slice started.
+	private final ThreadLocal<long[]> slice = ThreadLocal.withInitial(() -> new long[]{-1});
+
+	/**
+	 * @param budget The CPU time that the sync thread may use in each tick, in milliseconds.
+	 */
+	TickThrottle(long budget) {
+		this.budget = TimeUnit.MILLISECONDS.toNanos(budget);
+	}
+
+	/**
+	 * Start measuring the ticks.
+	 */
+	synchronized void start(JavaPlugin plugin) {
+		if (task == null && !stopped)
+			task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+	}
+
+	/**
+	 * Stop measuring the ticks and release any waiting thread, it won't throttle anymore.
+	 */
+	synchronized void stop() {
+		stopped = true;
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Called by the sync thread between units of work. It returns right away if the thread still has budget in this
+	 * tick, otherwise it waits for the next tick, or longer if the server is lagging.
+	 * @throws CancellationException if the thread is interrupted while waiting.
+	 */
+	void checkpoint() {
+		if (stopped || Bukkit.isPrimaryThread())
+			return;
+		long[] start = slice.get();
+		long now = cpuTime();
+		if (start[0] < 0) {
+			start[0] = now;
+			return;
+		}
+		if (now - start[0] < budget)
+			return;
+		try {
+			synchronized (lock) {
+				// Wait for a new tick, then keep waiting while the server is behind
+				long tick = lastTick;
+				do {
+					lock.wait(TimeUnit.NANOSECONDS.toMillis(TICK) * 2);
+				} while (!stopped && (lastTick == tick || isLagging()));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		}
+		start[0] = cpuTime();
+	}
+
+	/**
+	 * @return true if the recent ticks took longer than normal, or the current one is taking too long.
+	 */
+	boolean isLagging() {
+		long last = lastTick;
+		if (last == 0) // Not ticking yet
+			return false;
+		long limit = TICK * LAG_PERCENT / 100;
+		return averageTick > limit || System.nanoTime() - last > limit;
+	}
+
+	private void tick() {
+		long now = System.nanoTime();
+		long last = lastTick;
+		if (last != 0)
+			averageTick = (averageTick * 7 + (now - last)) / 8;
+		lastTick = now;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+
+	private static long cpuTime() {
+		// The wall time is used when the JVM can't measure the CPU time of a thread, such as a virtual thread. Then
+		// the budget also counts the time spent waiting for responses, so the sync thread is a platform thread.
+		long time = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+		return time >= 0 ? time : System.nanoTime();
+	}
+}
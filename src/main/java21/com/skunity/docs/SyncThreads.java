@@ -0,0 +1,57 @@
+package com.skunity.docs;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the threads that talk with skUnity. This is the Java 21 version: virtual threads, so a thread blocked in a
+ * request doesn't hold a platform thread and hundreds of them cost almost nothing. Virtual threads are always daemon.
+ * <br>
+ * It replaces the Java 8 version in <code>src/main/java</code>, which must have the same members.
+ */
+final class SyncThreads {
+
+	// Shared and never shut down, each task has its own virtual thread
+	private static final ExecutorService BACKGROUND = Executors.newThreadPerTaskExecutor(
+			Thread.ofVirtual().name("skUnity API background #", 1).factory());
+
+	private SyncThreads() {}
+
+	/**
+	 * @return If the threads are virtual.
+	 */
+	static boolean isVirtual() {
+		return true;
+	}
+
+	/**
+	 * @return An executor that runs everything in the same thread, in order.
+	 */
+	static ExecutorService newSingleThread(String name) {
+		return Executors.newSingleThreadExecutor(Thread.ofVirtual().name(name).factory());
+	}
+
+	/**
+	 * @return An executor that runs everything in the same platform thread, in order. The JVM can't measure the CPU
+	 * time of a virtual thread, and one that waits inside a synchronized block pins its carrier, so the throttled sync
+	 * thread is a platform thread.
+	 */
+	static ExecutorService newPlatformThread(String name) {
+		return Executors.newSingleThreadExecutor(Thread.ofPlatform().name(name).daemon().factory());
+	}
+
+	/**
+	 * @return An executor that runs up to the given amount of tasks at the same time.
+	 */
+	static ExecutorService newPool(int threads, String name) {
+		return Executors.newFixedThreadPool(threads, Thread.ofVirtual().name(name + " #", 1).factory());
+	}
+
+	/**
+	 * @return An executor for short tasks that nothing waits for.
+	 */
+	static Executor background() {
+		return BACKGROUND;
+	}
+}
@@ -0,0 +1,89 @@
+package com.skunity.docs;
+
+import com.google.gson.JsonObject;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link Documentation#deltaUploads(boolean)} against a {@link MockSkUnityServer}: the edits are sent with only their
+ * changed fields, and with all of them if skUnity doesn't accept it.
+ */
+public class DeltaUploadTest {
+
+	private static final String KEY = "load-test", ADDON = "DeltaAddon";
+	private static final int ADDS = 2, EDITS = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ScheduledExecutorService mainThread = Executors.newSingleThreadScheduledExecutor();
+	private final JsonSyntaxConverter converter = new JsonSyntaxConverter(new SyntaxGetter(null));
+
+	@After
+	public void stopMainThread() {
+		mainThread.shutdownNow();
+	}
+
+	@Test(timeout = 30000)
+	public void sendsOnlyTheChangedFields() throws Exception {
+		try (MockSkUnityServer server = new MockSkUnityServer(0).acceptKey(KEY).start()) {
+			SyncResult result = sync(server);
+			assertEquals(SyncResult.Status.SUCCESS, result.getStatus());
+			assertEquals(ADDS, result.getAdded());
+			assertEquals(EDITS, result.getEdited());
+			// The adds, then the changed fields of the edits
+			assertEquals(2, server.getRequests("massCreate"));
+			assertSynced(server);
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void sendsTheFullEditsOnceIfTheChangedFieldsAreRejected() throws Exception {
+		try (MockSkUnityServer server = new MockSkUnityServer(0).acceptKey(KEY).rejectPartialEdits().start()) {
+			SyncResult result = sync(server);
+			assertEquals(SyncResult.Status.SUCCESS, result.getStatus());
+			assertEquals(ADDS, result.getAdded());
+			assertEquals(EDITS, result.getEdited());
+			// The adds, the rejected changed fields and the full edits, without the adds again
+			assertEquals(3, server.getRequests("massCreate"));
+			assertSynced(server);
+		}
+	}
+
+	private SyncResult sync(MockSkUnityServer server) throws Exception {
+		for (int i = 0; i < EDITS; i++)
+			server.addSyntax(ADDON, converter.fromSyntax(syntax(i, "Old description")));
+		Documentation documentation = new Documentation(SyncLoadTest.createAddon(SyncLoadTest.createServer(mainThread),
+				folder.getRoot(), ADDON)) {
+			// Skript isn't loaded, the syntaxes are added by the test.
+			@Override
+			protected void checkSkript() {
+			}
+		}.loadAutomatically((Syntax.Type[]) null).apiUrl(server.getUrl()).deltaUploads(true);
+		for (int i = 0; i < EDITS + ADDS; i++)
+			documentation.addSyntax(syntax(i, "Description " + i));
+		return documentation.start().get(20, TimeUnit.SECONDS);
+	}
+
+	// Each local syntax is in skUnity once, with the local description
+	private void assertSynced(MockSkUnityServer server) {
+		assertEquals(EDITS + ADDS, server.getSyntaxes(ADDON).size());
+		for (JsonObject json : server.getSyntaxes(ADDON)) {
+			Syntax syntax = converter.fromJson(json);
+			String name = syntax.get(Syntax.Field.NAME);
+			assertEquals("Description " + name.substring(name.indexOf(' ') + 1), syntax.get(Syntax.Field.DESCRIPTION));
+		}
+	}
+
+	private static Syntax syntax(int index, String description) {
+		return TestSyntaxes.create(Syntax.Type.EFFECT, ADDON, index, description);
+	}
+}
@@ -0,0 +1,114 @@
+package com.skunity.docs;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExternalDiffTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void sameAsSyncPlanInMemory() throws IOException {
+		for (int seed = 0; seed < 5; seed++)
+			compare(seed, 500, Long.MAX_VALUE);
+	}
+
+	@Test
+	public void sameAsSyncPlanWithRuns() throws IOException {
+		// A tiny budget, so every sorter writes many runs and merges them in steps
+		for (int seed = 0; seed < 5; seed++)
+			compare(seed, 3000, 20000);
+	}
+
+	@Test
+	public void deletesItsFiles() throws IOException {
+		File directory = folder.newFolder();
+		Random random = new Random(0);
+		try (ExternalDiff diff = new ExternalDiff(directory, 1000)) {
+			for (int i = 0; i < 200; i++) {
+				diff.addLocal(generate(random));
+				diff.addRemote(generate(random).set(Syntax.Field.ID, i));
+			}
+			diff.finish(new Result());
+		}
+		assertEquals(0, directory.list().length);
+	}
+
+	// Both compare the same random catalogues, where many syntaxes share a name or patterns
+	private void compare(int seed, int size, long memory) throws IOException {
+		Random random = new Random(seed);
+		List<Syntax> local = new ArrayList<>(size), remote = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			local.add(generate(random));
+		for (int i = 0; i < size; i++)
+			remote.add(generate(random).set(Syntax.Field.ID, i));
+		List<Syntax> planned = new ArrayList<>(size);
+		for (Syntax syntax : local)
+			planned.add(syntax.copy());
+		SyncPlan plan = SyncPlan.create("Addon", planned, remote);
+		Result expected = new Result();
+		for (Syntax syntax : plan.getAdds())
+			expected.add(syntax);
+		for (SyncPlan.Edit edit : plan.getEdits())
+			expected.edit(edit);
+		for (Syntax syntax : plan.getOrphans())
+			expected.orphan(syntax);
+
+		Result actual = new Result();
+		try (ExternalDiff diff = new ExternalDiff(folder.newFolder(), memory)) {
+			for (Syntax syntax : local)
+				diff.addLocal(syntax.copy());
+			for (Syntax syntax : remote)
+				diff.addRemote(syntax);
+			diff.finish(actual);
+		}
+		assertEquals("seed " + seed, expected.sorted(), actual.sorted());
+	}
+
+	private static Syntax generate(Random random) {
+		return TestSyntaxes.random(random, Syntax.Type.EFFECT, Syntax.Type.EXPRESSION, Syntax.Type.CONDITION);
+	}
+
+	// Each add, edit and orphan as a line, so both results can be compared regardless of their order
+	private static final class Result implements ExternalDiff.Handler {
+		private final List<String> lines = new ArrayList<>();
+
+		@Override
+		public void add(Syntax syntax) {
+			lines.add("add " + describe(syntax));
+		}
+
+		@Override
+		public void edit(SyncPlan.Edit edit) {
+			lines.add("edit " + describe(edit.getSyntax()) + " from " + describe(edit.getPrevious()) + " "
+					+ edit.getChangedFields());
+		}
+
+		@Override
+		public void orphan(Syntax syntax) {
+			lines.add("orphan " + describe(syntax));
+		}
+
+		private List<String> sorted() {
+			List<String> sorted = new ArrayList<>(lines);
+			Collections.sort(sorted);
+			return sorted;
+		}
+
+		private static String describe(Syntax syntax) {
+			return syntax.get(Syntax.Field.TYPE) + "|" + syntax.get(Syntax.Field.ID) + "|" + syntax.get(Syntax.Field.NAME)
+					+ "|" + syntax.get(Syntax.Field.PATTERN) + "|" + syntax.get(Syntax.Field.DESCRIPTION);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.skunity.docs;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonSyntaxConverterTest {
+
+	private final JsonSyntaxConverter converter = new JsonSyntaxConverter(null);
+
+	@Test
+	public void streamingWriteIsTheSameAsTheJsonObject() throws IOException {
+		for (Syntax syntax : generate(500)) {
+			StringWriter streamed = new StringWriter();
+			try (JsonWriter writer = new JsonWriter(streamed)) {
+				converter.write(writer, syntax);
+			}
+			// JsonElement#toString() is how the objects were sent before they were streamed
+			assertEquals(converter.fromSyntax(syntax).toString(), streamed.toString());
+		}
+	}
+
+	@Test
+	public void streamingReadIsTheSameAsTheJsonObject() throws IOException {
+		for (Syntax syntax : generate(500)) {
+			String json = converter.fromSyntax(syntax).toString();
+			Syntax read;
+			try (JsonReader reader = new JsonReader(new StringReader(json))) {
+				read = converter.read(reader);
+			}
+			Syntax parsed = converter.fromJson(new JsonParser().parse(json).getAsJsonObject());
+			assertEquals(parsed, read);
+			assertEquals(syntax.<Integer>get(Syntax.Field.ID), read.get(Syntax.Field.ID));
+			assertEquals(converter.fromSyntax(parsed).toString(), converter.fromSyntax(read).toString());
+		}
+	}
+
+	@Test
+	public void keepsTheJsonObjectUntilChanged() throws IOException {
+		JsonObject json = converter.fromSyntax(generate(1).get(0));
+		json.addProperty("unknown", "kept");
+		Syntax syntax = converter.fromJson(json);
+		assertTrue(converter.fromSyntax(syntax).has("unknown"));
+		StringWriter streamed = new StringWriter();
+		try (JsonWriter writer = new JsonWriter(streamed)) {
+			converter.write(writer, syntax);
+		}
+		assertEquals(json.toString(), streamed.toString());
+		// A changed syntax is written from its fields
+		syntax.set(Syntax.Field.DESCRIPTION, "Changed");
+		JsonObject changed = converter.fromSyntax(syntax);
+		assertFalse(changed.has("unknown"));
+		assertEquals("Changed", changed.get(Syntax.Field.DESCRIPTION.toString()).getAsString());
+	}
+
+	private static List<Syntax> generate(int amount) {
+		Random random = new Random(1);
+		List<Syntax> syntaxes = new ArrayList<>(amount);
+		for (int i = 0; i < amount; i++) {
+			Syntax syntax = TestSyntaxes.random(random);
+			if (random.nextBoolean())
+				syntax.set(Syntax.Field.ID, random.nextInt(100000));
+			syntaxes.add(syntax);
+		}
+		return syntaxes;
+	}
+}
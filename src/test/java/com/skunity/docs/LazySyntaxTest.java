@@ -0,0 +1,93 @@
+package com.skunity.docs;
+
+import ch.njol.skript.lang.Effect;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LazySyntaxTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void loadingDoesNotResolveDescriptions() throws IOException {
+		CountingGetter getter = new CountingGetter();
+		Documentation documentation = createDocumentation(getter);
+		List<Syntax> loaded = documentation.loadSyntaxes();
+		assertEquals(2, loaded.size());
+		for (Syntax syntax : loaded) {
+			assertTrue(syntax instanceof LazySyntax);
+			assertFalse(((LazySyntax) syntax).isResolved(Syntax.Field.DESCRIPTION));
+		}
+		assertEquals(0, getter.descriptions.get());
+		// The cheap fields are searchable right away
+		assertEquals(1, documentation.getIndex().findByPattern("teleport").size());
+		assertEquals(0, getter.descriptions.get());
+		// The first search of words resolves the descriptions, once
+		assertEquals(1, documentation.getIndex().findByText("somewhere").size());
+		assertEquals(1, documentation.getIndex().search("kick reason").size());
+		assertEquals(2, getter.descriptions.get());
+	}
+
+	@Test
+	public void replacedSyntaxesAreNotSearched() throws IOException {
+		Documentation documentation = createDocumentation(new CountingGetter());
+		// Every sync adds the syntaxes again, the pending descriptions of the old ones are dropped
+		documentation.loadSyntaxes();
+		documentation.loadSyntaxes();
+		assertEquals(2, documentation.getIndex().size());
+		assertEquals(1, documentation.getIndex().findByText("somewhere").size());
+	}
+
+	private Documentation createDocumentation(SyntaxGetter getter) throws IOException {
+		Documentation documentation = new Documentation(SyncLoadTest.createAddon(SyncLoadTest.createServer(null),
+				folder.getRoot(), "LazyAddon")) {
+			// Skript isn't loaded, the elements are classes with their fields in the getter
+			@Override
+			protected List<Object> getElements(Syntax.Type type) {
+				return type == Syntax.Type.EFFECT ? Arrays.<Object>asList(Teleport.class, Kick.class)
+						: Collections.emptyList();
+			}
+		}.loadAutomatically(Syntax.Type.EFFECT).lazySyntax(true);
+		return documentation.setSyntaxGetter(getter);
+	}
+
+	abstract static class Teleport extends Effect {
+	}
+
+	abstract static class Kick extends Effect {
+	}
+
+	// Reads the fields from the class name, counting how many descriptions were resolved
+	private static final class CountingGetter extends SyntaxGetter {
+		private final AtomicInteger descriptions = new AtomicInteger();
+
+		private CountingGetter() {
+			super(null);
+		}
+
+		@Override
+		public String[] getFromClass(Syntax.Field field, Class<?> source) {
+			String name = source.getSimpleName();
+			switch (field) {
+				case NAME: return new String[]{name};
+				case PATTERN: return new String[]{name.toLowerCase() + " %player%"};
+				case DESCRIPTION:
+					descriptions.incrementAndGet();
+					return new String[]{source == Teleport.class ? "Teleports a player somewhere." : "Kicks a player with a reason."};
+				default: return null;
+			}
+		}
+	}
+}
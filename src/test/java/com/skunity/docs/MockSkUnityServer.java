@@ -0,0 +1,324 @@
+package com.skunity.docs;
+
+import com.google.gson.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local server that answers like skUnity API (<code>checkKey</code>, <code>getAddonSyntax</code> and
+ * <code>massCreate</code>), keeping the syntaxes in memory. It is used to test a {@link Documentation} without
+ * touching skUnity:
+ * <pre><code>
+ * MockSkUnityServer server = new MockSkUnityServer(0).acceptKey("my key").start();
+ * new Documentation(this).apiUrl(server.getUrl()).start();
+ * </code></pre>
+ * Latency and failures can be injected with {@link #latency(long)} and {@link #failureRate(double)}. Edits that only
+ * have some fields are merged with the stored syntax, unless {@link #rejectPartialEdits()} is used.
+ * @see SyncLoadTest
+ */
+public class MockSkUnityServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+	//The syntaxes by id, and the ids of each addon.
+	private final Map<Integer, JsonObject> syntaxes = new ConcurrentHashMap<>();
+	private final Map<String, Set<Integer>> addons = new ConcurrentHashMap<>();
+	private final AtomicInteger ids = new AtomicInteger();
+
+	private volatile long latency = 0;
+	private volatile double failureRate = 0;
+	private volatile boolean rejectPartialEdits = false;
+
+	private final AtomicLong requests = new AtomicLong(), failures = new AtomicLong(), bytesReceived = new AtomicLong();
+	private final Map<String, AtomicLong> functions = new ConcurrentHashMap<>();
+
+	/**
+	 * Create the server, which only listens after {@link #start()}.
+	 * @param port The port, or 0 to use any free port.
+	 * @throws IOException if the port can't be used.
+	 */
+	public MockSkUnityServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "Mock skUnity API");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/api/", this::handle);
+	}
+
+	/**
+	 * Start listening.
+	 * @return Its own instance
+	 */
+	public MockSkUnityServer start() {
+		server.start();
+		return this;
+	}
+
+	/**
+	 * @return The base URL to be used in {@link Documentation#apiUrl(String)}.
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/";
+	}
+
+	/**
+	 * Accept a key. If no key is added, any key is accepted.
+	 * @param key The key.
+	 * @return Its own instance
+	 */
+	public MockSkUnityServer acceptKey(String key) {
+		keys.add(key);
+		return this;
+	}
+
+	/**
+	 * Wait before answering each request.
+	 * @param millis The time to wait, in milliseconds.
+	 * @return Its own instance
+	 */
+	public MockSkUnityServer latency(long millis) {
+		latency = millis;
+		return this;
+	}
+
+	/**
+	 * Answer some requests with an error.
+	 * @param rate The chance of a request to fail, from 0 to 1.
+	 * @return Its own instance
+	 */
+	public MockSkUnityServer failureRate(double rate) {
+		failureRate = rate;
+		return this;
+	}
+
+	/**
+	 * Answer a <code>massCreate</code> that has an edit with only some fields with a body that isn't json, without
+	 * changing anything, like a server that doesn't understand them.
+	 * @return Its own instance
+	 */
+	public MockSkUnityServer rejectPartialEdits() {
+		rejectPartialEdits = true;
+		return this;
+	}
+
+	/**
+	 * Add a syntax as if it was already in skUnity.
+	 * @param addon The addon's name.
+	 * @param json The syntax, in the same format of {@link JsonSyntaxConverter}. The id is replaced.
+	 * @return The id of the syntax.
+	 */
+	public int addSyntax(String addon, JsonObject json) {
+		int id = ids.incrementAndGet();
+		JsonObject copy = new JsonObject();
+		for (Map.Entry<String, JsonElement> entry : json.entrySet())
+			copy.add(entry.getKey(), entry.getValue());
+		copy.addProperty(Syntax.Field.ID.toString(), id);
+		syntaxes.put(id, copy);
+		addons.computeIfAbsent(addon, k -> ConcurrentHashMap.newKeySet()).add(id);
+		return id;
+	}
+
+	/**
+	 * @param addon The addon's name.
+	 * @return The syntaxes of the addon.
+	 */
+	public List<JsonObject> getSyntaxes(String addon) {
+		List<JsonObject> result = new ArrayList<>();
+		for (int id : addons.getOrDefault(addon, Collections.emptySet()))
+			result.add(syntaxes.get(id));
+		return result;
+	}
+
+	/**
+	 * @return The amount of requests received.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @param function The function, such as <code>massCreate</code>.
+	 * @return The amount of requests of the function.
+	 */
+	public long getRequests(String function) {
+		AtomicLong count = functions.get(function);
+		return count != null ? count.get() : 0;
+	}
+
+	/**
+	 * @return The amount of requests answered with an injected failure.
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * @return The amount of bytes received in the body of the requests.
+	 */
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requests.incrementAndGet();
+			byte[] body = readAll(exchange.getRequestBody());
+			bytesReceived.addAndGet(body.length);
+			if (latency > 0)
+				Thread.sleep(latency);
+			if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+				failures.incrementAndGet();
+				answer(exchange, 500, error("Injected failure"));
+				return;
+			}
+			Map<String, String> query = parse(exchange.getRequestURI().getRawQuery());
+			if (!keys.isEmpty() && !keys.contains(query.get("key"))) {
+				answer(exchange, 403, error("Invalid key"));
+				return;
+			}
+			String function = query.getOrDefault("function", "");
+			functions.computeIfAbsent(function, k -> new AtomicLong()).incrementAndGet();
+			switch (function) {
+				case "checkKey":
+					answer(exchange, 200, success(null));
+					break;
+				case "getAddonSyntax":
+					JsonArray result = new JsonArray();
+					for (JsonObject json : getSyntaxes(query.getOrDefault("addon", "")))
+						result.add(json);
+					answer(exchange, 200, success(result));
+					break;
+				case "massCreate":
+					String data = parse(new String(body, StandardCharsets.UTF_8)).get("data");
+					if (data == null) {
+						answer(exchange, 400, error("No data"));
+						break;
+					}
+					JsonArray array = new JsonParser().parse(data).getAsJsonArray();
+					if (rejectPartialEdits && hasPartialEdit(array)) {
+						answer(exchange, 200, "The syntax data is incomplete");
+						break;
+					}
+					answer(exchange, 200, success(massCreate(array)));
+					break;
+				default:
+					answer(exchange, 404, error("Unknown function " + function));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			answer(exchange, 500, error(e.toString()));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private JsonArray massCreate(JsonArray array) {
+		JsonArray result = new JsonArray();
+		for (JsonElement element : array) {
+			JsonObject json = element.getAsJsonObject();
+			JsonElement id = json.get(Syntax.Field.ID.toString());
+			JsonObject stored = id != null && id.isJsonPrimitive() ? syntaxes.get(id.getAsInt()) : null;
+			if (stored != null) {
+				// Only the sent fields are changed
+				synchronized (stored) {
+					for (Map.Entry<String, JsonElement> entry : json.entrySet())
+						stored.add(entry.getKey(), entry.getValue());
+				}
+				result.add(new JsonPrimitive(id.getAsInt()));
+			} else {
+				JsonElement addon = json.get(Syntax.Field.ADDON.toString());
+				result.add(new JsonPrimitive(addSyntax(addon != null && addon.isJsonPrimitive() ? addon.getAsString() : "", json)));
+			}
+		}
+		return result;
+	}
+
+	// An edit of a stored syntax that doesn't have all its fields
+	private boolean hasPartialEdit(JsonArray array) {
+		for (JsonElement element : array) {
+			JsonObject json = element.getAsJsonObject();
+			JsonElement id = json.get(Syntax.Field.ID.toString());
+			JsonObject stored = id != null && id.isJsonPrimitive() ? syntaxes.get(id.getAsInt()) : null;
+			if (stored != null)
+				for (Map.Entry<String, JsonElement> entry : stored.entrySet())
+					if (!json.has(entry.getKey()))
+						return true;
+		}
+		return false;
+	}
+
+	private static JsonObject success(JsonElement result) {
+		JsonObject json = new JsonObject();
+		json.addProperty("response", "success");
+		if (result != null)
+			json.add("result", result);
+		return json;
+	}
+
+	private static JsonObject error(String message) {
+		JsonObject json = new JsonObject();
+		json.addProperty("response", "error");
+		json.addProperty("message", message);
+		return json;
+	}
+
+	private static void answer(HttpExchange exchange, int code, JsonObject json) throws IOException {
+		answer(exchange, code, "application/json", json.toString());
+	}
+
+	private static void answer(HttpExchange exchange, int code, String text) throws IOException {
+		answer(exchange, code, "text/plain", text);
+	}
+
+	private static void answer(HttpExchange exchange, int code, String type, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", type);
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	private static byte[] readAll(InputStream input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = input.read(buffer)) >= 0)
+			output.write(buffer, 0, read);
+		return output.toByteArray();
+	}
+
+	private static Map<String, String> parse(String query) throws UnsupportedEncodingException {
+		Map<String, String> result = new HashMap<>();
+		if (query == null)
+			return result;
+		for (String pair : query.split("&")) {
+			int index = pair.indexOf('=');
+			if (index > 0)
+				result.put(URLDecoder.decode(pair.substring(0, index), "UTF-8"),
+						URLDecoder.decode(pair.substring(index + 1), "UTF-8"));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,57 @@
+package com.skunity.docs;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PatternOverlapDetectorTest {
+
+	@Test
+	public void singularAndPluralSlotsOverlap() {
+		List<PatternOverlapDetector.Overlap> overlaps = detect("kill %player%", "kill %players%");
+		assertEquals(1, overlaps.size());
+		assertEquals(PatternOverlapDetector.Kind.IDENTICAL, overlaps.get(0).getKind());
+		assertEquals("kill %player%", overlaps.get(0).getFirstPattern());
+
+		overlaps = detect("kill %player% [now]", "kill %entities/players%");
+		assertEquals(1, overlaps.size());
+		assertEquals(PatternOverlapDetector.Kind.OVERLAP, overlaps.get(0).getKind());
+	}
+
+	@Test
+	public void slotsOfDifferentTypesDontOverlap() {
+		assertTrue(detect("kill %player%", "kill %entity%").isEmpty());
+		assertTrue(detect("%player% is online", "%world% is online").isEmpty());
+		// A slot never matches a word either
+		assertTrue(detect("kill %player%", "kill all").isEmpty());
+	}
+
+	@Test
+	public void wildcardsOverlapSlots() {
+		List<PatternOverlapDetector.Overlap> overlaps = detect("message <.+> to %player%", "message %string% to %player%");
+		assertEquals(1, overlaps.size());
+		assertEquals(PatternOverlapDetector.Kind.OVERLAP, overlaps.get(0).getKind());
+		// But the words around them must still match
+		assertTrue(detect("message <.+> to %player%", "message %string% from %player%").isEmpty());
+	}
+
+	@Test
+	public void onlyStatementsAreComparedWithOtherTypes() {
+		assertEquals(1, detect(Syntax.Type.EFFECT, "stop %player%", Syntax.Type.CONDITION, "stop %player%").size());
+		assertTrue(detect(Syntax.Type.EFFECT, "stop %player%", Syntax.Type.EXPRESSION, "stop %player%").isEmpty());
+	}
+
+	private static List<PatternOverlapDetector.Overlap> detect(String pattern1, String pattern2) {
+		return detect(Syntax.Type.EFFECT, pattern1, Syntax.Type.EFFECT, pattern2);
+	}
+
+	private static List<PatternOverlapDetector.Overlap> detect(Syntax.Type type1, String pattern1, Syntax.Type type2, String pattern2) {
+		return new PatternOverlapDetector()
+				.add("First", type1, pattern1)
+				.add("Second", type2, pattern2)
+				.detect();
+	}
+}
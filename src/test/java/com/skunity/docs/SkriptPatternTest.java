@@ -0,0 +1,43 @@
+package com.skunity.docs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SkriptPatternTest {
+
+	private static final String[] PATTERNS = {
+			"(1¦one|2¦two) of %player%",
+			"[the] (1¦first|2¦last) %number% of  %objects%",
+			"do \\\\function\\(%objects%\\)",
+			"\\give %itemtypes% \\[to %player%\\]",
+			"a\\|b <.+> \\%x\\%",
+			"x \\<y\\> [(a|b\\)c)]"};
+
+	@Test
+	public void friendlyPatternsParseToTheSameStructure() {
+		for (String pattern : PATTERNS) {
+			SkriptPattern parsed = SkriptPattern.parse(pattern);
+			String friendly = parsed.toFriendlyString();
+			assertEquals(friendly, parsed, SkriptPattern.parse(friendly));
+			assertTrue(friendly, StringUtils.equalsPatterns(pattern, friendly));
+		}
+	}
+
+	@Test
+	public void friendlyPatternsDropMarksAndUnneededEscapes() {
+		assertEquals("(one|two) of %player%", SkriptPattern.parse("(1¦one|2¦two) of %player%").toFriendlyString());
+		assertEquals("give %itemtypes% \\[to %player%\\]",
+				SkriptPattern.parse("\\give %itemtypes% \\[to %player%\\]").toFriendlyString());
+	}
+
+	@Test
+	public void friendlyRegexesParseToTheSameStructure() {
+		for (String regex : new String[]{"some ?example(s)?", "(a|b)\\s*c", "\\d+ ticks?"}) {
+			SkriptPattern converted = SkriptPattern.fromRegex(regex);
+			assertEquals(regex, converted, SkriptPattern.parse(converted.toFriendlyString()));
+		}
+		assertEquals("some[ ]example[s]", SkriptPattern.fromRegex("some ?example(s)?").toFriendlyString());
+	}
+}
@@ -0,0 +1,118 @@
+package com.skunity.docs;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StringUtilsTest {
+
+	private static final String[][] EQUAL = {
+			{"Line one\r\nLine two", "Line one\nLine two"},
+			{"set {_x} to 1\n\tsend {_x}", "set {_x} to 1\n    send {_x}"},
+			{"  Teleports a player.  ", "Teleports a player."},
+			{"\n\nTeleports a player.\r\n", "Teleports a player."},
+			{"Teleports   a \t player.", "Teleports a player."},
+			{"", " \r\n\t "},
+			{null, ""}};
+
+	private static final String[][] DIFFERENT = {
+			{"Teleports a player.", "Teleports aplayer."},
+			{"Teleports a player.", "Teleports a player!"},
+			{"a b", "ab"},
+			{"", "a"}};
+
+	@Test
+	public void ignoresWhitespace() {
+		for (String[] pair : EQUAL) {
+			assertTrue(pair[0] + " | " + pair[1], StringUtils.equalsText(pair[0], pair[1]));
+			assertEquals(fingerprint(pair[0]), fingerprint(pair[1]));
+		}
+		for (String[] pair : DIFFERENT) {
+			assertFalse(pair[0] + " | " + pair[1], StringUtils.equalsText(pair[0], pair[1]));
+			assertNotEquals(fingerprint(pair[0]), fingerprint(pair[1]));
+		}
+	}
+
+	@Test
+	public void equalTextHasTheSameFingerprint() {
+		Random random = new Random(0);
+		for (int i = 0; i < 20000; i++) {
+			String text = randomText(random);
+			// The same text with other whitespace, or a text that may differ in anything
+			String other = random.nextBoolean() ? respace(text, random) : randomText(random);
+			boolean equal = StringUtils.equalsText(text, other);
+			assertEquals(text + " | " + other, collapse(text).equals(collapse(other)), equal);
+			if (equal)
+				assertEquals(text + " | " + other, fingerprint(text), fingerprint(other));
+		}
+	}
+
+	@Test
+	public void changedExamplesAreAnEdit() {
+		Syntax remote = syntax("on join:\n\tsend \"Hi\"").set(Syntax.Field.ID, 1);
+		// Only the line endings and indentation changed, it is the same syntax
+		SyncPlan plan = SyncPlan.create("Addon", Collections.singletonList(syntax("on join:\r\n    send \"Hi\"")),
+				Collections.singletonList(remote));
+		assertTrue(plan.getAdds().isEmpty());
+		assertTrue(plan.getEdits().isEmpty());
+		plan = SyncPlan.create("Addon", Collections.singletonList(syntax("on join:\n\tsend \"Hello\"")),
+				Collections.singletonList(remote));
+		assertTrue(plan.getAdds().isEmpty());
+		assertEquals(1, plan.getEdits().size());
+		assertEquals(EnumSet.of(Syntax.Field.EXAMPLES), plan.getEdits().get(0).getChangedFields());
+	}
+
+	private static Syntax syntax(String examples) {
+		Syntax syntax = new Syntax(Syntax.Type.EFFECT);
+		syntax.set(Syntax.Field.NAME, "Greet");
+		syntax.set(Syntax.Field.PATTERN, "greet %player%");
+		syntax.set(Syntax.Field.ADDON, "Addon");
+		syntax.set(Syntax.Field.EXAMPLES, examples);
+		return syntax;
+	}
+
+	// The fingerprint of a syntax that has the text as description
+	private static long fingerprint(String description) {
+		Syntax syntax = syntax("");
+		if (description != null)
+			syntax.set(Syntax.Field.DESCRIPTION, description);
+		return SyntaxSnapshot.fingerprint(syntax);
+	}
+
+	// What equalsText compares, with normalized copies
+	private static String collapse(String text) {
+		return text.trim().replaceAll("\\s+", " ");
+	}
+
+	private static String randomText(Random random) {
+		String chars = "ab. \t\r\n";
+		StringBuilder sb = new StringBuilder();
+		for (int i = random.nextInt(12); i > 0; i--)
+			sb.append(chars.charAt(random.nextInt(chars.length())));
+		return sb.toString();
+	}
+
+	// Replaces each run of whitespace, and the ends, with another random run of whitespace
+	private static String respace(String text, Random random) {
+		StringBuilder sb = new StringBuilder(whitespace(random, 0));
+		for (String word : text.trim().split("\\s+"))
+			if (!word.isEmpty())
+				sb.append(word).append(whitespace(random, 1));
+		return sb.toString();
+	}
+
+	private static String whitespace(Random random, int min) {
+		String chars = " \t\r\n";
+		StringBuilder sb = new StringBuilder();
+		for (int i = min + random.nextInt(3); i > 0; i--)
+			sb.append(chars.charAt(random.nextInt(chars.length())));
+		return sb.toString();
+	}
+}
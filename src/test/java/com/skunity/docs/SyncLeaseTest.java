@@ -0,0 +1,95 @@
+package com.skunity.docs;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncLeaseTest {
+
+	private static final long TTL = 2000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void onlyOneServerHoldsTheLease() throws IOException {
+		File directory = folder.getRoot();
+		SyncLease first = new SyncLease(directory, "Addon", TTL), second = new SyncLease(directory, "Addon", TTL);
+		assertTrue(first.acquire());
+		assertFalse(second.acquire());
+		assertTrue(first.getHolderSince() > 0);
+		assertEquals(first.getHolderSince(), second.getHolderSince());
+		// A failed sync deletes the lease right away
+		first.release();
+		assertTrue(second.acquire());
+		second.release();
+	}
+
+	@Test
+	public void completedLeaseIsKeptUntilItExpires() throws IOException {
+		File directory = folder.getRoot();
+		SyncLease first = new SyncLease(directory, "Addon", TTL);
+		assertTrue(first.acquire());
+		first.complete();
+		first.release();
+		assertFalse(new SyncLease(directory, "Addon", TTL).acquire());
+		expire(new File(directory, "Addon.lease"));
+		SyncLease next = new SyncLease(directory, "Addon", TTL);
+		assertTrue(next.acquire());
+		next.release();
+	}
+
+	@Test
+	public void staleLeaseIsTakenByOneServer() throws Exception {
+		File directory = folder.getRoot();
+		File file = new File(directory, "Addon.lease");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int round = 0; round < 50; round++) {
+				Files.write(file.toPath(), "crashed server\n0".getBytes(StandardCharsets.UTF_8));
+				expire(file);
+				CountDownLatch start = new CountDownLatch(1);
+				List<SyncLease> leases = new ArrayList<>();
+				List<Future<Boolean>> results = new ArrayList<>();
+				for (int i = 0; i < 8; i++) {
+					SyncLease lease = new SyncLease(directory, "Addon", TTL);
+					leases.add(lease);
+					results.add(executor.submit(() -> {
+						start.await();
+						return lease.acquire();
+					}));
+				}
+				start.countDown();
+				int held = 0;
+				for (Future<Boolean> result : results)
+					if (result.get())
+						held++;
+				for (SyncLease lease : leases)
+					if (!lease.isHeld())
+						assertFalse(lease.acquire());
+				assertEquals("Round " + round + ": servers holding the lease", 1, held);
+				for (SyncLease lease : leases)
+					lease.release();
+				Files.deleteIfExists(file.toPath());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void expire(File file) {
+		assertTrue(file.setLastModified(System.currentTimeMillis() - TTL * 5));
+	}
+}
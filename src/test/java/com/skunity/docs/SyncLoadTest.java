@@ -0,0 +1,250 @@
+package com.skunity.docs;
+
+import org.bukkit.Server;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A load test of {@link Documentation#start()} against a {@link MockSkUnityServer}: many addons check their key,
+ * download, compare and upload their syntaxes at the same time, like a network of servers starting together. Skript
+ * isn't loaded, each addon is a {@link JavaPlugin} of a fake server and its syntaxes are added with
+ * {@link Documentation#addSyntax(Syntax)}.
+ * <br>
+ * The tests run a small load, a bigger one can be run with:
+ * <pre><code>
+ * java -cp &lt;test classpath&gt; com.skunity.docs.SyncLoadTest [addons] [syntaxes per addon] [latency ms] [failure rate]
+ * </code></pre>
+ */
+public class SyncLoadTest {
+
+	private static final String KEY = "load-test";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 60000)
+	public void syncsAllAddons() throws Exception {
+		int addons = 20, syntaxes = 200;
+		Result result = run(folder.newFolder(), addons, syntaxes, 5, 0);
+		assertEquals(result.toString(), 0, result.failed);
+		assertEquals(result.toString(), addons * getAdds(syntaxes), result.added);
+		assertEquals(result.toString(), addons * getEdits(syntaxes), result.edited);
+		// Each local syntax is in skUnity once, nothing was added twice
+		assertEquals(result.toString(), 0, result.mismatched);
+	}
+
+	@Test(timeout = 60000)
+	public void completesWhenRequestsFail() throws Exception {
+		int addons = 20;
+		Result result = run(folder.newFolder(), addons, 100, 0, 0.2);
+		// Every sync completes, as success or failure, none of them hangs
+		assertEquals(result.toString(), addons, result.succeeded + result.failed);
+	}
+
+	public static void main(String[] args) throws Exception {
+		File folder = Files.createTempDirectory("skunity-load-test").toFile();
+		System.out.println(run(folder,
+				args.length > 0 ? Integer.parseInt(args[0]) : 50,
+				args.length > 1 ? Integer.parseInt(args[1]) : 500,
+				args.length > 2 ? Long.parseLong(args[2]) : 20,
+				args.length > 3 ? Double.parseDouble(args[3]) : 0.01));
+	}
+
+	/**
+	 * Start a mock server, sync all addons and stop it.
+	 * @param folder The folder where the data folder of each addon is created.
+	 * @param addons The amount of addons that sync at the same time.
+	 * @param syntaxes The amount of syntaxes of each addon. A third of them is already in the server, half of it
+	 *                 changed locally.
+	 * @param latency The latency of each request, in milliseconds.
+	 * @param failureRate The chance of a request to fail, from 0 to 1.
+	 */
+	static Result run(File folder, int addons, int syntaxes, long latency, double failureRate)
+			throws IOException, InterruptedException {
+		ScheduledExecutorService mainThread = Executors.newSingleThreadScheduledExecutor();
+		try (MockSkUnityServer server = new MockSkUnityServer(0).acceptKey(KEY).latency(latency).failureRate(failureRate).start()) {
+			JsonSyntaxConverter converter = new JsonSyntaxConverter(new SyntaxGetter(null));
+			for (int addon = 0; addon < addons; addon++)
+				for (int i = 0; i < syntaxes; i += 3)
+					server.addSyntax(getName(addon), converter.fromSyntax(generate(addon, i, i % 2 == 0)));
+			Server bukkit = createServer(mainThread);
+			List<Documentation> documentations = new ArrayList<>(addons);
+			for (int addon = 0; addon < addons; addon++)
+				documentations.add(createDocumentation(createAddon(bukkit, folder, getName(addon)), server.getUrl(),
+						addon, syntaxes));
+			Runtime runtime = Runtime.getRuntime();
+			System.gc();
+			long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+			long start = System.nanoTime();
+			List<CompletableFuture<SyncResult>> syncs = new ArrayList<>(addons);
+			for (Documentation documentation : documentations)
+				syncs.add(documentation.start());
+			Result result = new Result();
+			for (CompletableFuture<SyncResult> sync : syncs) {
+				SyncResult sent;
+				try {
+					sent = sync.get();
+				} catch (ExecutionException | CancellationException e) {
+					sent = SyncResult.failed(e);
+				}
+				if (sent.getStatus() == SyncResult.Status.SUCCESS) {
+					result.succeeded++;
+					result.added += sent.getAdded();
+					result.edited += sent.getEdited();
+				} else
+					result.failed++;
+			}
+			result.elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			result.heapGrowth = Math.max(0, runtime.totalMemory() - runtime.freeMemory() - usedBefore);
+			for (int addon = 0; addon < addons; addon++)
+				if (server.getSyntaxes(getName(addon)).size() != syntaxes)
+					result.mismatched++;
+			result.addons = addons;
+			result.syntaxes = syntaxes;
+			result.requests = server.getRequests();
+			result.failures = server.getFailures();
+			result.bytesSent = server.getBytesReceived();
+			return result;
+		} finally {
+			mainThread.shutdownNow();
+		}
+	}
+
+	/**
+	 * The outcome of a {@link #run(File, int, int, long, double)}.
+	 */
+	static final class Result {
+
+		int addons, syntaxes, succeeded, failed, added, edited;
+		//The addons that don't have all their syntaxes in the server once, after the sync.
+		int mismatched;
+		long elapsed, heapGrowth, requests, failures, bytesSent;
+
+		@Override
+		public String toString() {
+			return String.format("%d addons x %d syntaxes in %d ms: %d added, %d edited, %d failed addons, "
+							+ "%d mismatched addons, %d requests (%d injected failures), %d KB sent, ~%d KB heap growth, "
+							+ "%s threads",
+					addons, syntaxes, elapsed, added, edited, failed, mismatched, requests, failures, bytesSent / 1024,
+					heapGrowth / 1024, SyncThreads.isVirtual() ? "virtual" : "platform");
+		}
+	}
+
+	private static Documentation createDocumentation(JavaPlugin addon, String url, int index, int syntaxes) {
+		Documentation documentation = new Documentation(addon) {
+			// Skript isn't loaded, the syntaxes are added by the test.
+			@Override
+			protected void checkSkript() {
+			}
+		}.loadAutomatically((Syntax.Type[]) null).apiUrl(url);
+		for (int i = 0; i < syntaxes; i++)
+			documentation.addSyntax(generate(index, i, false));
+		return documentation;
+	}
+
+	// An addon of the server, with a key in its data folder.
+	@SuppressWarnings("deprecation")
+	static JavaPlugin createAddon(Server server, File folder, String name) throws IOException {
+		File dataFolder = new File(folder, name);
+		if (!dataFolder.mkdirs())
+			throw new IOException("Couldn't create the folder " + dataFolder);
+		Files.write(new File(dataFolder, "addon.key").toPath(), KEY.getBytes(StandardCharsets.UTF_8));
+		return new LoadTestAddon(new JavaPluginLoader(server),
+				new PluginDescriptionFile(name, "1.0", LoadTestAddon.class.getName()), dataFolder);
+	}
+
+	// A server with only what Documentation uses: the tasks run in mainThread, and no event is ever called.
+	static Server createServer(ScheduledExecutorService mainThread) {
+		Logger logger = Logger.getLogger("SyncLoadTest");
+		PluginManager plugins = proxy(PluginManager.class, (method, args) -> {
+			if (method.getName().equals("registerEvents"))
+				return null;
+			throw new UnsupportedOperationException(method.getName());
+		});
+		BukkitScheduler scheduler = proxy(BukkitScheduler.class, (method, args) -> {
+			if (!method.getName().equals("runTaskLater"))
+				throw new UnsupportedOperationException(method.getName());
+			ScheduledFuture<?> task = mainThread.schedule((Runnable) args[1], (Long) args[2] * 50, TimeUnit.MILLISECONDS);
+			return proxy(BukkitTask.class, (taskMethod, taskArgs) -> {
+				if (taskMethod.getName().equals("cancel"))
+					task.cancel(false);
+				else if (taskMethod.getName().equals("isCancelled"))
+					return task.isCancelled();
+				return null;
+			});
+		});
+		return proxy(Server.class, (method, args) -> {
+			switch (method.getName()) {
+				case "getPluginManager": return plugins;
+				case "getScheduler": return scheduler;
+				case "getLogger": return logger;
+				case "isPrimaryThread": return false;
+				default: throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	// An interface implemented by the handler. Null is the default value for primitives, like a mock.
+	private static <T> T proxy(Class<T> type, BiFunction<Method, Object[], Object> handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+			if (method.getDeclaringClass() == Object.class)
+				switch (method.getName()) {
+					case "equals": return proxy == args[0];
+					case "hashCode": return System.identityHashCode(proxy);
+					default: return type.getSimpleName();
+				}
+			Object result = handler.apply(method, args);
+			if (result == null && method.getReturnType().isPrimitive() && method.getReturnType() != void.class)
+				return method.getReturnType() == boolean.class ? false : 0;
+			return result;
+		}));
+	}
+
+	// JavaPlugin has a constructor for tests, that doesn't need a plugin class loader.
+	static final class LoadTestAddon extends JavaPlugin {
+
+		LoadTestAddon(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder) {
+			super(loader, description, dataFolder, new File(dataFolder, description.getName() + ".jar"));
+		}
+	}
+
+	private static Syntax generate(int addon, int index, boolean outdated) {
+		return TestSyntaxes.create(Syntax.Type.EFFECT, getName(addon), index,
+				outdated ? "Old description" : "Description of syntax " + index);
+	}
+
+	// The syntaxes that aren't in the server yet, one of each three is.
+	private static int getAdds(int syntaxes) {
+		return syntaxes - (syntaxes + 2) / 3;
+	}
+
+	// The syntaxes in the server that changed locally, one of each two.
+	private static int getEdits(int syntaxes) {
+		return (syntaxes + 5) / 6;
+	}
+
+	private static String getName(int addon) {
+		return "LoadTestAddon" + addon;
+	}
+}
@@ -0,0 +1,107 @@
+package com.skunity.docs;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyncPlanTest {
+
+	private static final String ADDON = "PlanAddon";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ScheduledExecutorService mainThread = Executors.newSingleThreadScheduledExecutor();
+	private final JsonSyntaxConverter converter = new JsonSyntaxConverter(new SyntaxGetter(null));
+
+	@After
+	public void stopMainThread() {
+		mainThread.shutdownNow();
+	}
+
+	@Test
+	public void readsWhatWasWritten() throws IOException {
+		// 0 to 4 are new, 5 to 9 are edited, 10 to 14 are up to date and 15 to 19 are orphans
+		List<Syntax> local = new ArrayList<>(), remote = new ArrayList<>();
+		for (int i = 0; i < 15; i++)
+			local.add(TestSyntaxes.create(Syntax.Type.EFFECT, ADDON, i, "Description " + i));
+		for (int i = 5; i < 20; i++)
+			remote.add(TestSyntaxes.create(Syntax.Type.EFFECT, ADDON, i, i < 10 ? "Old description" : "Description " + i)
+					.set(Syntax.Field.ID, i));
+		SyncPlan plan = SyncPlan.create(ADDON, local, remote);
+		assertEquals(5, plan.getAdds().size());
+		assertEquals(5, plan.getEdits().size());
+		assertEquals(5, plan.getOrphans().size());
+
+		File file = new File(folder.getRoot(), "plans/sync-plan.json");
+		plan.write(file, converter);
+		SyncPlan read = SyncPlan.read(file, converter);
+		assertEquals(ADDON, read.getAddon());
+		assertEquals(plan.getCreated(), read.getCreated());
+		assertEquals(plan.getAdds(), read.getAdds());
+		assertEquals(plan.getOrphans(), read.getOrphans());
+		assertEquals(plan.getEdits().size(), read.getEdits().size());
+		for (int i = 0; i < plan.getEdits().size(); i++) {
+			SyncPlan.Edit written = plan.getEdits().get(i), edit = read.getEdits().get(i);
+			assertEquals(written.getSyntax(), edit.getSyntax());
+			assertEquals(written.getChangedFields(), edit.getChangedFields());
+			// The previous syntax only keeps the changed fields
+			assertEquals(written.getPrevious().<Integer>get(Syntax.Field.ID), edit.getPrevious().get(Syntax.Field.ID));
+			for (Syntax.Field field : written.getChangedFields())
+				assertEquals(written.getPrevious().<Object>get(field), edit.getPrevious().get(field));
+		}
+	}
+
+	@Test
+	public void rejectsInvalidFiles() throws IOException {
+		String[] invalid = {"", "[]", "{\"addon\": \"" + ADDON + "\", \"created\": 1}",
+				"{\"addon\": \"" + ADDON + "\", \"created\": \"yesterday\", \"edits\": []}",
+				"{\"addon\": \"" + ADDON + "\", \"created\": 1, \"edits\": [{\"syntax\": 1, \"changes\": {}}]}"};
+		File file = new File(folder.getRoot(), "sync-plan.json");
+		for (String json : invalid) {
+			Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+			try {
+				SyncPlan.read(file, converter);
+				throw new AssertionError("The plan " + json + " was read");
+			} catch (IOException expected) {
+				// Any invalid plan fails as an IOException
+			}
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void plansEverythingAsNewIfTheKeyCantBeChecked() throws Exception {
+		String url;
+		try (MockSkUnityServer server = new MockSkUnityServer(0).start()) {
+			url = server.getUrl();
+		}
+		// Nothing listens at the url anymore
+		Documentation documentation = new Documentation(SyncLoadTest.createAddon(SyncLoadTest.createServer(mainThread),
+				folder.getRoot(), ADDON)) {
+			// Skript isn't loaded, the syntaxes are added by the test.
+			@Override
+			protected void checkSkript() {
+			}
+		}.loadAutomatically((Syntax.Type[]) null).apiUrl(url);
+		for (int i = 0; i < 3; i++)
+			documentation.addSyntax(TestSyntaxes.create(Syntax.Type.EFFECT, ADDON, i, "Description " + i));
+		SyncPlan plan = documentation.plan().get(20, TimeUnit.SECONDS);
+		assertEquals(3, plan.getAdds().size());
+		assertTrue(plan.getEdits().isEmpty());
+		assertTrue(plan.getOrphans().isEmpty());
+	}
+}
@@ -0,0 +1,64 @@
+package com.skunity.docs;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SyntaxIndexTest {
+
+	@Test
+	public void replacedSyntaxIsFoundOnce() {
+		SyntaxIndex index = new SyntaxIndex();
+		index.add(syntax(1, "first"));
+		Syntax updated = syntax(1, "second");
+		index.add(updated);
+		assertEquals(1, index.size());
+		assertFound(index, 1, updated);
+		assertTrue(index.findByText("first").isEmpty());
+	}
+
+	@Test
+	public void replacedSyntaxIsFoundOnceAfterCompaction() {
+		int size = 100;
+		SyntaxIndex index = new SyntaxIndex();
+		Syntax[] current = new Syntax[size];
+		// Documentation adds every syntax again in each sync, the replaced ones are compacted once they are the most
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < size; i++)
+				index.add(current[i] = syntax(i, "round" + round));
+			assertEquals(size, index.size());
+			// The replaced syntaxes don't pile up
+			assertTrue(index.getSlots() <= size * 2 + 1);
+			for (int i = 0; i < size; i++)
+				assertFound(index, i, current[i]);
+			assertEquals(size, index.findByText("round" + round).size());
+			if (round > 0)
+				assertTrue(index.findByText("round" + (round - 1)).isEmpty());
+		}
+		// The order is still the order they were added
+		List<Syntax> all = index.findByPattern("%player%");
+		for (int i = 0; i < size; i++)
+			assertSame(current[i], all.get(i));
+	}
+
+	private static void assertFound(SyntaxIndex index, int number, Syntax expected) {
+		List<Syntax> byPattern = index.findByPattern("index", "effect" + number);
+		assertEquals(1, byPattern.size());
+		assertSame(expected, byPattern.get(0));
+		List<Syntax> search = index.search("effect" + number + " %player%");
+		assertEquals(1, search.size());
+		assertSame(expected, search.get(0));
+	}
+
+	private static Syntax syntax(int number, String description) {
+		Syntax syntax = new Syntax(Syntax.Type.EFFECT);
+		syntax.set(Syntax.Field.NAME, "Effect " + number);
+		syntax.set(Syntax.Field.PATTERN, "index effect" + number + " %player%");
+		syntax.set(Syntax.Field.DESCRIPTION, "Described in " + description);
+		return syntax;
+	}
+}
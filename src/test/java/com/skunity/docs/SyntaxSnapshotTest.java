@@ -0,0 +1,88 @@
+package com.skunity.docs;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyntaxSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsWhatWasWritten() throws IOException {
+		File file = new File(folder.getRoot(), "syntaxes.snapshot");
+		List<Syntax> syntaxes = generate(50);
+		SyntaxSnapshot.write(file, syntaxes);
+		SyntaxSnapshot snapshot = SyntaxSnapshot.open(file);
+		assertEquals(syntaxes.size(), snapshot.size());
+		for (Syntax syntax : syntaxes) {
+			assertTrue(snapshot.isUpToDate(syntax));
+			int record = snapshot.indexOf(syntax.get(Syntax.Field.TYPE), syntax.get(Syntax.Field.NAME));
+			assertEquals(syntax, snapshot.getSyntax(record));
+		}
+	}
+
+	@Test
+	public void rejectsTruncatedFiles() throws IOException {
+		File file = new File(folder.getRoot(), "syntaxes.snapshot");
+		SyntaxSnapshot.write(file, generate(20));
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		File damaged = new File(folder.getRoot(), "truncated.snapshot");
+		for (int length = 0; length < bytes.length; length++) {
+			Files.write(damaged.toPath(), Arrays.copyOf(bytes, length));
+			try {
+				SyntaxSnapshot.open(damaged);
+				throw new AssertionError("A snapshot truncated to " + length + " of " + bytes.length + " bytes was opened");
+			} catch (IOException expected) {
+				// It must fail to open, not when it is read
+			}
+		}
+	}
+
+	@Test
+	public void damagedFilesFailToOpenOrCanBeRead() throws IOException {
+		File file = new File(folder.getRoot(), "syntaxes.snapshot");
+		SyntaxSnapshot.write(file, generate(20));
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		File damaged = new File(folder.getRoot(), "damaged.snapshot");
+		Random random = new Random(1);
+		for (int i = 0; i < 2000; i++) {
+			byte[] copy = bytes.clone();
+			for (int flips = random.nextInt(4) + 1; flips > 0; flips--)
+				copy[random.nextInt(copy.length)] ^= 1 << random.nextInt(8);
+			Files.write(damaged.toPath(), copy);
+			SyntaxSnapshot snapshot;
+			try {
+				snapshot = SyntaxSnapshot.open(damaged);
+			} catch (IOException e) {
+				continue;
+			}
+			// Any snapshot that opens can be fully read
+			for (int record = 0; record < snapshot.size(); record++) {
+				Syntax syntax = snapshot.getSyntax(record);
+				snapshot.getFingerprint(record);
+				snapshot.indexOf(syntax.get(Syntax.Field.TYPE), syntax.get(Syntax.Field.NAME));
+			}
+		}
+	}
+
+	private static List<Syntax> generate(int amount) {
+		List<Syntax> syntaxes = new ArrayList<>(amount);
+		for (int i = 0; i < amount; i++)
+			syntaxes.add(TestSyntaxes.create(i % 2 == 0 ? Syntax.Type.EFFECT : Syntax.Type.EXPRESSION, "SnapshotTest", i,
+					"Description of syntax " + i).set(Syntax.Field.ID, i));
+		return syntaxes;
+	}
+}
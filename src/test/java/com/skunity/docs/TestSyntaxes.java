@@ -0,0 +1,60 @@
+package com.skunity.docs;
+
+import java.util.Random;
+
+/**
+ * Syntaxes for the tests, so they are built the same way in all of them.
+ */
+final class TestSyntaxes {
+
+	// Few patterns, so random syntaxes often share one, also written in other ways
+	private static final String[] PATTERNS = {"foo [bar]", "foo[ ]bar", "(a|b) %player%", "(b|a) %player%", "x",
+			"1¦y", "y", "z %-number%"};
+
+	private TestSyntaxes() {
+	}
+
+	/**
+	 * A syntax with a unique name and pattern for its index in the addon.
+	 * @param type The syntax type.
+	 * @param addon The addon's name, also the first word of the pattern.
+	 * @param index The index of the syntax.
+	 * @param description Its description.
+	 * @return A new syntax.
+	 */
+	static Syntax create(Syntax.Type type, String addon, int index, String description) {
+		Syntax syntax = new Syntax(type);
+		syntax.set(Syntax.Field.NAME, "Syntax " + index);
+		syntax.set(Syntax.Field.PATTERN, addon.toLowerCase() + " syntax " + index + " %player%");
+		syntax.set(Syntax.Field.DESCRIPTION, description);
+		syntax.set(Syntax.Field.ADDON, addon);
+		return syntax;
+	}
+
+	/**
+	 * A random syntax without id. Many of them share a name, a pattern or the other fields, so they also work as
+	 * local and remote catalogues to compare.
+	 * @param random The source of the syntax.
+	 * @param types The types it can have, or none for any type.
+	 * @return A new syntax.
+	 */
+	static Syntax random(Random random, Syntax.Type... types) {
+		if (types.length == 0)
+			types = Syntax.Type.values();
+		Syntax syntax = new Syntax(types[random.nextInt(types.length)]);
+		if (random.nextInt(10) > 0)
+			syntax.set(Syntax.Field.NAME, "Name " + random.nextInt(300));
+		syntax.set(Syntax.Field.PATTERN, PATTERNS[random.nextInt(PATTERNS.length)]
+				+ (random.nextInt(3) == 0 ? "" : " " + random.nextInt(150)));
+		for (Syntax.Field field : syntax.<Syntax.Type>get(Syntax.Field.TYPE).getFields()) {
+			if (field == Syntax.Field.TYPE || field == Syntax.Field.ID || field == Syntax.Field.NAME
+					|| field == Syntax.Field.PATTERN || random.nextBoolean())
+				continue;
+			if (field == Syntax.Field.CHANGERS || field == Syntax.Field.EVENT_VALUES)
+				syntax.set(field, random.nextBoolean() ? new String[0] : new String[]{"set", "other\n\"quoted\""});
+			else
+				syntax.set(field, random.nextInt(5) == 0 ? "" : field + " " + random.nextInt(3) + " é <html> \t");
+		}
+		return syntax;
+	}
+}